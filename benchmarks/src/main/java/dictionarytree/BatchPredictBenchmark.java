@@ -0,0 +1,65 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of predictAll() against calling predict(prefix, n) for each prefix, on a batch holding every prefix
+ * (of 1 to 6 characters) of randomly chosen words - so the prefixes overlap as they do when a word is typed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchPredictBenchmark {
+    private static final int WORDS = 4096;
+
+    @Param({"100000", "400000"})
+    public int size;
+
+    @Param({"10"})
+    public int n;
+
+    private DictionaryTree tree;
+    private List<String> prefixes;
+
+    @Setup
+    public void setUp() {
+        WordLists wordLists = WordLists.generate(size, "english", 1.0);
+        tree = wordLists.tree();
+        prefixes = new ArrayList<>();
+        for (int length = 1 ; length <= 6 ; length++) {
+            for (String prefix : wordLists.prefixes(length, WORDS))
+                prefixes.add(prefix);
+        }
+    }
+
+    @Benchmark
+    public int predictEach() {
+        int found = 0;
+        for (String prefix : prefixes)
+            found += tree.predict(prefix, n).size();
+        return found;
+    }
+
+    @Benchmark
+    public Map<String, List<String>> predictAll() {
+        return tree.predictAll(prefixes, n);
+    }
+}
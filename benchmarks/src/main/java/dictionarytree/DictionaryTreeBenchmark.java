@@ -0,0 +1,147 @@
+package dictionarytree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the operations of DictionaryTree which do not depend on a prefix, over dictionaries of different
+ * sizes and word length distributions. See PredictBenchmark for predict().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DictionaryTreeBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000", "400000"})
+    public int size;
+
+    @Param({"english", "uniform"})
+    public String lengths;
+
+    private WordLists wordLists;
+    private DictionaryTree tree;
+    private String[] present;
+    private String[] missing;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        wordLists = WordLists.generate(size, lengths, 1.0);
+        tree = wordLists.tree();
+        present = new String[QUERIES];
+        for (int i = 0 ; i < QUERIES ; i++)
+            present[i] = wordLists.words[(int) ((long) i * size / QUERIES)];
+        missing = wordLists.missingWords(QUERIES);
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+
+    /**
+     * Builds the whole dictionary with insert(word, popularity) - the time per word is this divided by the size.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public DictionaryTree insertAll() {
+        return wordLists.tree();
+    }
+
+    /**
+     * Removes a word and inserts it again, so the dictionary is the same after every call.
+     */
+    @Benchmark
+    public boolean removeAndInsert() {
+        int i = nextQuery();
+        int index = (int) ((long) i * size / QUERIES);
+        boolean wasLeaf = tree.remove(present[i]);
+        tree.insert(present[i], wordLists.popularities[index]);
+        return wasLeaf;
+    }
+
+    @Benchmark
+    public boolean containsPresent() {
+        return tree.contains(present[nextQuery()]);
+    }
+
+    @Benchmark
+    public boolean containsMissing() {
+        return tree.contains(missing[nextQuery()]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> allWords() {
+        return tree.allWords();
+    }
+
+    @Benchmark
+    public int size() {
+        return tree.size();
+    }
+
+    @Benchmark
+    public int height() {
+        return tree.height();
+    }
+
+    @Benchmark
+    public int numLeaves() {
+        return tree.numLeaves();
+    }
+
+    @Benchmark
+    public int maximumBranching() {
+        return tree.maximumBranching();
+    }
+
+    @Benchmark
+    public String longestWord() {
+        return tree.longestWord();
+    }
+
+    /**
+     * The number of nodes counted by fold(), as a custom aggregate over the whole tree.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int foldSize() {
+        return tree.fold((node, children) -> {
+            int nodes = 1;
+            for (int childNodes : children)
+                nodes += childNodes;
+            return nodes;
+        });
+    }
+
+    /**
+     * The same aggregate as foldSize(), with parallelFold().
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int parallelFoldSize() {
+        return tree.parallelFold((node, children) -> {
+            int nodes = 1;
+            for (int childNodes : children)
+                nodes += childNodes;
+            return nodes;
+        });
+    }
+}
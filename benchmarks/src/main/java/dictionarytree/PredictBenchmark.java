@@ -0,0 +1,66 @@
+package dictionarytree;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of predict(prefix) and predict(prefix, n) for prefixes of 1 to 6 characters. Short prefixes have the
+ * largest sub-trees, so they show how the cost depends on the number of words under the prefix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000", "400000"})
+    public int size;
+
+    @Param({"1", "2", "3", "4", "5", "6"})
+    public int prefixLength;
+
+    @Param({"10"})
+    public int n;
+
+    private DictionaryTree tree;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        WordLists wordLists = WordLists.generate(size, "english", 1.0);
+        tree = wordLists.tree();
+        prefixes = wordLists.prefixes(prefixLength, QUERIES);
+    }
+
+    private String nextPrefix() {
+        next = (next + 1) & (QUERIES - 1);
+        return prefixes[next];
+    }
+
+    @Benchmark
+    public Optional<String> predict() {
+        return tree.predict(nextPrefix());
+    }
+
+    @Benchmark
+    public List<String> predictTopN() {
+        return tree.predict(nextPrefix(), n);
+    }
+}
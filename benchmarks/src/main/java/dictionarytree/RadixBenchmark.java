@@ -0,0 +1,73 @@
+package dictionarytree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of RadixDictionaryTree, to compare with the same operations of DictionaryTree in DictionaryTreeBenchmark
+ * and PredictBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RadixBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000", "400000"})
+    public int size;
+
+    @Param({"10"})
+    public int n;
+
+    private WordLists wordLists;
+    private RadixDictionaryTree tree;
+    private String[] present;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        wordLists = WordLists.generate(size, "english", 1.0);
+        tree = wordLists.radixTree();
+        present = new String[QUERIES];
+        for (int i = 0 ; i < QUERIES ; i++)
+            present[i] = wordLists.words[(int) ((long) i * size / QUERIES)];
+        prefixes = wordLists.prefixes(3, QUERIES);
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public RadixDictionaryTree insertAll() {
+        return wordLists.radixTree();
+    }
+
+    @Benchmark
+    public boolean containsPresent() {
+        return tree.contains(present[nextQuery()]);
+    }
+
+    @Benchmark
+    public List<String> predictTopN() {
+        return tree.predict(prefixes[nextQuery()], n);
+    }
+}
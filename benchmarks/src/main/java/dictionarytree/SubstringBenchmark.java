@@ -0,0 +1,87 @@
+package dictionarytree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of predictContaining and predictEndingWith through the substring index (see SubstringIndex), either
+ * built over every word at once or with part of the words inserted after it was built - so that the index holds
+ * several segments, as it does once a dictionary has been changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubstringBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "400000"})
+    public int size;
+
+    @Param({"10"})
+    public int n;
+
+    // The part of the words which is inserted after the index is built.
+    @Param({"0", "0.25"})
+    public double inserted;
+
+    private WordLists wordLists;
+    private DictionaryTree tree;
+    private String[] infixes;
+    private String[] suffixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        wordLists = WordLists.generate(size, "english", 1.0);
+        int before = (int) (size * (1 - inserted));
+        tree = new DictionaryTree();
+        for (int i = 0 ; i < before ; i++)
+            tree.insert(wordLists.words[i], wordLists.popularities[i]);
+        SubstringIndex index = tree.enableSubstringIndex();
+        for (int i = before ; i < size ; i++)
+            tree.insert(wordLists.words[i], wordLists.popularities[i]);
+        // Measure the index as it settles, not while a merge is still being built in the background.
+        index.awaitMerges();
+        infixes = wordLists.substrings(3, false, QUERIES);
+        suffixes = wordLists.substrings(3, true, QUERIES);
+    }
+
+    private int nextQuery() {
+        next = (next + 1) & (QUERIES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public List<String> predictContaining() {
+        return tree.predictContaining(infixes[nextQuery()], n);
+    }
+
+    @Benchmark
+    public List<String> predictEndingWith() {
+        return tree.predictEndingWith(suffixes[nextQuery()], n);
+    }
+
+    /**
+     * Builds the index over every word of the dictionary.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SubstringIndex enableSubstringIndex() {
+        return tree.enableSubstringIndex();
+    }
+}
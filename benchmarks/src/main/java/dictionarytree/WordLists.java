@@ -0,0 +1,165 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic word lists for the benchmarks, generated from a fixed seed so every run (and every fork) uses the same
+ * data. Letters are drawn with English letter frequencies, so the branching of the tree is close to that of a real
+ * dictionary, and popularities follow a Zipf distribution, as word frequencies do.
+ */
+final class WordLists {
+    // Relative frequencies of 'a' to 'z' in English text.
+    private static final double[] LETTER_FREQUENCIES = {
+            8.2, 1.5, 2.8, 4.3, 12.7, 2.2, 2.0, 6.1, 7.0, 0.15, 0.77, 4.0, 2.4,
+            6.7, 7.5, 1.9, 0.095, 6.0, 6.3, 9.1, 2.8, 0.98, 2.4, 0.15, 2.0, 0.074
+    };
+    // Relative frequencies of word lengths 1 to 20 in an English dictionary.
+    private static final double[] ENGLISH_LENGTHS = {
+            0.1, 0.6, 2.6, 5.2, 8.5, 11.5, 13.0, 13.0, 11.8, 9.8, 7.7, 5.6, 3.8, 2.5, 1.6, 0.9, 0.5, 0.3, 0.2, 0.1
+    };
+
+    final String[] words;
+    final int[] popularities;
+
+    private WordLists(String[] words, int[] popularities) {
+        this.words = words;
+        this.popularities = popularities;
+    }
+
+    /**
+     * Generates a list of distinct words.
+     *
+     * @param size the number of words
+     * @param lengths "english" for the length distribution of an English dictionary, or "uniform" for lengths spread
+     *                evenly from 3 to 12 characters
+     * @param zipfExponent the exponent s of the Zipf distribution - the popularity of the word of rank k is
+     *                     proportional to 1 / k^s
+     */
+    static WordLists generate(int size, String lengths, double zipfExponent) {
+        Random random = new Random(42);
+        double[] letterCumulative = cumulative(LETTER_FREQUENCIES);
+        double[] lengthCumulative = cumulative(ENGLISH_LENGTHS);
+
+        Set<String> distinct = new LinkedHashSet<>();
+        while (distinct.size() < size) {
+            int length;
+            if (lengths.equals("english"))
+                length = 1 + pick(lengthCumulative, random);
+            else if (lengths.equals("uniform"))
+                length = 3 + random.nextInt(10);
+            else
+                throw new IllegalArgumentException("Unknown length distribution: " + lengths);
+            char[] word = new char[length];
+            for (int i = 0 ; i < length ; i++)
+                word[i] = (char) ('a' + pick(letterCumulative, random));
+            distinct.add(new String(word));
+        }
+        String[] words = distinct.toArray(new String[0]);
+
+        // Give the ranks 1 to size to the words in a random order.
+        List<Integer> ranks = new ArrayList<>();
+        for (int i = 1 ; i <= size ; i++)
+            ranks.add(i);
+        Collections.shuffle(ranks, random);
+        int[] popularities = new int[size];
+        for (int i = 0 ; i < size ; i++)
+            popularities[i] = (int) (1_000_000_000 / Math.pow(ranks.get(i), zipfExponent));
+        return new WordLists(words, popularities);
+    }
+
+    /**
+     * @return a tree holding every word, with its popularity
+     */
+    DictionaryTree tree() {
+        DictionaryTree tree = new DictionaryTree();
+        for (int i = 0 ; i < words.length ; i++)
+            tree.insert(words[i], popularities[i]);
+        return tree;
+    }
+
+    /**
+     * @return a path-compressed tree holding every word, with its popularity
+     */
+    RadixDictionaryTree radixTree() {
+        RadixDictionaryTree tree = new RadixDictionaryTree();
+        for (int i = 0 ; i < words.length ; i++)
+            tree.insert(words[i], popularities[i]);
+        return tree;
+    }
+
+    /**
+     * @return count prefixes of the given length, taken from randomly chosen words at least that long
+     */
+    String[] prefixes(int length, int count) {
+        Random random = new Random(7);
+        String[] prefixes = new String[count];
+        int found = 0;
+        while (found < count) {
+            String word = words[random.nextInt(words.length)];
+            if (word.length() >= length)
+                prefixes[found++] = word.substring(0, length);
+        }
+        return prefixes;
+    }
+
+    /**
+     * @return count substrings of the given length, taken from randomly chosen words at least that long - from their
+     * ends if atEnd, or else from anywhere in them
+     */
+    String[] substrings(int length, boolean atEnd, int count) {
+        Random random = new Random(13);
+        String[] substrings = new String[count];
+        int found = 0;
+        while (found < count) {
+            String word = words[random.nextInt(words.length)];
+            if (word.length() >= length) {
+                int start = atEnd ? word.length() - length : random.nextInt(word.length() - length + 1);
+                substrings[found++] = word.substring(start, start + length);
+            }
+        }
+        return substrings;
+    }
+
+    /**
+     * @return count words which are not in the list
+     */
+    String[] missingWords(int count) {
+        Set<String> present = new HashSet<>(Arrays.asList(words));
+        String[] missing = new String[count];
+        Random random = new Random(11);
+        int found = 0;
+        while (found < count) {
+            // Changing the last letter of a word keeps the lookup realistic - most of the path exists.
+            char[] word = words[random.nextInt(words.length)].toCharArray();
+            word[word.length - 1] = (char) ('a' + random.nextInt(26));
+            String candidate = new String(word);
+            if (!present.contains(candidate))
+                missing[found++] = candidate;
+        }
+        return missing;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double total = 0;
+        for (int i = 0 ; i < weights.length ; i++) {
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        for (int i = 0 ; i < weights.length ; i++)
+            cumulative[i] /= total;
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+}
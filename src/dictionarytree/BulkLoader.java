@@ -0,0 +1,154 @@
+package dictionarytree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Loads a word list (one word per line) into a DictionaryTree in one pass, giving each word the popularity that
+ * CLI.loadWords has always given it - -1 for the first line, -2 for the second and so on.
+ *
+ * The file is memory mapped and decoded as UTF-8 in a single step, and its lines are split into groups by their first
+ * character. Each group becomes a separate child of the root, so the groups are built in parallel with a
+ * DictionaryTree.Builder (which makes good use of sorted input) and then joined together.
+ */
+public class BulkLoader {
+
+    /**
+     * Loads the words (lines) from the given file as load(f, parallel), recording the time taken as a LOAD in the
+     * given metrics, which are then enabled on the tree. The metrics are not made to report the size of the tree -
+     * that is left to their owner (e.g. ReloadingDictionary.enableMetrics, which reports the current version), so that
+     * they never keep a tree alive after it has been replaced.
+     *
+     * @param f the file from which the words will be loaded
+     * @param parallel whether the groups are built in parallel
+     * @param metrics the metrics to record into
+     * @return the dictionary with the words loaded from the given file
+     * @throws IOException if there was a problem opening/reading from the file
+     */
+    static DictionaryTree load(File f, boolean parallel, DictionaryMetrics metrics) throws IOException {
+        DictionaryMetrics.Sample sample = metrics.start(DictionaryMetrics.Operation.LOAD);
+        DictionaryTree tree;
+        try {
+            tree = load(f, parallel);
+        } finally {
+            // A failed load is recorded too (and then there is no tree to enable the metrics on).
+            sample.stop(f.getPath());
+        }
+        tree.enableMetrics(metrics);
+        return tree;
+    }
+
+    /**
+     * Loads the words (lines) from the given file.
+     *
+     * @param f the file from which the words will be loaded
+     * @return the dictionary with the words loaded from the given file
+     * @throws IOException if there was a problem opening/reading from the file
+     */
+    static DictionaryTree load(File f) throws IOException {
+        return load(f, true);
+    }
+
+    /**
+     * Loads the words (lines) from the given file, building the groups of words either in parallel or one after
+     * another in the calling thread (e.g. for a reload in the background, which should not compete for every core).
+     *
+     * @param f the file from which the words will be loaded
+     * @param parallel whether the groups are built in parallel
+     * @return the dictionary with the words loaded from the given file
+     * @throws IOException if there was a problem opening/reading from the file
+     */
+    static DictionaryTree load(File f, boolean parallel) throws IOException {
+        CharBuffer chars;
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(f + " is too large to be mapped (" + channel.size() + " bytes)");
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = decoder.decode(bytes);
+        }
+        return load(chars.array(), chars.arrayOffset(), chars.arrayOffset() + chars.remaining(), parallel);
+    }
+
+    /**
+     * Loads the words (lines) held in text[start, end).
+     */
+    static DictionaryTree load(char[] text, int start, int end) {
+        return load(text, start, end, true);
+    }
+
+    /**
+     * Loads the words (lines) held in text[start, end), building the groups of words in parallel if asked.
+     */
+    static DictionaryTree load(char[] text, int start, int end, boolean parallel) {
+        // Split the text into lines, grouped by their first character in the order the characters first appear.
+        // Lines end with "\n", "\r" or "\r\n", as for BufferedReader.readLine(). Empty lines are skipped, but still
+        // count towards the popularity of the lines after them.
+        Map<Character, Lines> groups = new LinkedHashMap<>();
+        int lineNumber = 0;
+        int lineStart = start;
+        for (int i = start ; i <= end ; i++) {
+            if (i < end && text[i] != '\n' && text[i] != '\r')
+                continue;
+            if (i == end && lineStart == end)
+                break; // No line after a final line break.
+            if (i > lineStart)
+                groups.computeIfAbsent(text[lineStart], c -> new Lines()).add(lineStart, i, -(lineNumber + 1));
+            lineNumber++;
+            if (i < end - 1 && text[i] == '\r' && text[i + 1] == '\n')
+                i++;
+            lineStart = i + 1;
+        }
+
+        // The groups share no nodes, so they can be built at the same time.
+        List<Lines> lines = new ArrayList<>(groups.values());
+        List<DictionaryTree> parts = (parallel ? lines.parallelStream() : lines.stream())
+                .map(group -> group.build(text))
+                .collect(Collectors.toList());
+        return DictionaryTree.join(parts);
+    }
+
+    /**
+     * The lines starting with the same character, in the order they appear in the file.
+     */
+    private static final class Lines {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] popularities = new int[16];
+        private int size;
+
+        void add(int start, int end, int popularity) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                popularities = Arrays.copyOf(popularities, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            popularities[size] = popularity;
+            size++;
+        }
+
+        DictionaryTree build(char[] text) {
+            DictionaryTree.Builder builder = new DictionaryTree.Builder();
+            for (int i = 0 ; i < size ; i++)
+                builder.add(text, starts[i], ends[i], popularities[i]);
+            return builder.build();
+        }
+    }
+}
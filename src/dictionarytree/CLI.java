@@ -0,0 +1,176 @@
+package dictionarytree;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Harry Levick
+ */
+public class CLI {
+
+    /**
+     * Loads words (lines) from the given file and inserts them into
+     * a dictionary. A snapshot of the words is saved beside the file (see snapshotOf), so that the next start can map
+     * it instead of parsing the file again.
+     *
+     * @param f the file from which the words will be loaded
+     * @return the dictionary with the words loaded from the given file
+     * @throws IOException if there was a problem opening/reading from the file
+     */
+    static DictionaryTree loadWords(File f) throws IOException {
+        // Each word is given the popularity -(line number), so the first line is the most popular.
+        long start = System.nanoTime();
+        DictionaryTree d = BulkLoader.load(f);
+        System.out.println("");
+
+        System.out.println("Loaded in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        try {
+            d.save(snapshotOf(f).toPath());
+        } catch (IOException e) {
+            System.out.println("Could not save a snapshot: " + e.getMessage());
+        }
+
+        System.out.println("Tree size = " + d.size());
+        System.out.println("Tree height = " + d.height());
+        System.out.println("Longest word = " + d.longestWord());
+        System.out.println("Maximum branching = " + d.maximumBranching());
+        System.out.println("Number of leaves = " + d.numLeaves());
+        System.out.println("There are " + d.allWords().size() + " words returned by the allWords() method");
+        System.out.println("There are " + d.size() + " nodes in the tree");
+        System.out.println("Tree contains 'hello'? " + d.contains("hello"));
+        System.out.println("remove 'hello' -> " + d.remove("hello"));
+        System.out.println("There are " + d.allWords().size() + " words returned by the allWords() method");
+        System.out.println("There are " + d.size() + " nodes in the tree");
+        System.out.println("Tree contains 'hello'? " + d.contains("hello"));
+        System.out.println(d.predict("h"));
+
+
+
+
+        return d;
+    }
+
+    /**
+     * @return the file beside the word list in which loadWords saves a snapshot of its words
+     */
+    static File snapshotOf(File words) {
+        return new File(words.getPath() + ".dtree");
+    }
+
+    /**
+     * Maps the snapshot of the word list saved by an earlier start, if it is newer than the word list (a snapshot
+     * written in the same instant as the list is not trusted, as the times of some file systems are coarse).
+     *
+     * @return the words of the list, or an empty optional if there is no current snapshot, or it cannot be read
+     */
+    static Optional<FrozenDictionary> mapSnapshot(File words) {
+        File snapshot = snapshotOf(words);
+        if (!snapshot.isFile() || snapshot.lastModified() <= words.lastModified())
+            return Optional.empty();
+        try {
+            return Optional.of(FrozenDictionary.map(snapshot.toPath()));
+        } catch (IOException e) {
+            System.out.println("Ignoring the snapshot: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Watches the word list for edits, and registers the metrics of every version of the dictionary with JMX.
+     *
+     * @param words the word list
+     * @param d the dictionary already loaded from it
+     * @return the dictionary, which follows edits to the word list
+     */
+    private static ReloadingDictionary reloading(File words, DictionaryTree d) throws IOException {
+        // Edits to the word list are picked up without a restart. The metrics follow each version of the dictionary
+        // (and time each reload), and can be watched through JMX while the CLI runs.
+        ReloadingDictionary live = new ReloadingDictionary(words, d);
+        live.enableMetrics().register("CLI");
+        live.start();
+        return live;
+    }
+
+    /**
+     * Usage: CLI wordsFile [--serve address], where address is a port, host:port or the path of a Unix-domain socket.
+     * With --serve, predictions are answered for clients of a PredictionServer (see LoadGenerator) instead of being
+     * read from the standard input, until the standard input is closed.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean serve = args.length == 3 && args[1].equals("--serve");
+        if (args.length != 1 && !serve) {
+            System.err.println("Usage: CLI wordsFile [--serve address]");
+            System.exit(2);
+        }
+        File words = new File(args[0]);
+        // Prompts are answered from the snapshot saved by an earlier start, if it is current, while the dictionary
+        // (which can follow edits to the list) is loaded in the background - the server needs the dictionary first.
+        Optional<FrozenDictionary> snapshot = serve ? Optional.empty() : mapSnapshot(words);
+        AtomicReference<ReloadingDictionary> loaded = new AtomicReference<>();
+        if (snapshot.isPresent()) {
+            System.out.println("Mapped the snapshot " + snapshotOf(words));
+            Thread loader = new Thread(() -> {
+                try {
+                    loaded.set(reloading(words, BulkLoader.load(words)));
+                } catch (IOException e) {
+                    System.out.println("Could not load " + words + ", answering from the snapshot: " + e.getMessage());
+                }
+            }, "dictionary-load");
+            loader.setDaemon(true);
+            loader.start();
+        } else {
+            System.out.print("Loading dictionary ... ");
+            loaded.set(reloading(words, loadWords(words)));
+        }
+
+        if (serve) {
+            ReloadingDictionary live = loaded.get();
+            try (PredictionServer server = new PredictionServer(live::snapshot,
+                    2 * Runtime.getRuntime().availableProcessors(), 10_000)) {
+                System.out.println("Serving predictions on " + server.start(PredictionServer.address(args[2])));
+                while (System.in.read() >= 0) {
+                    // Serve until the standard input is closed.
+                }
+                System.out.println("Answered " + server.answered() + " requests, refused " + server.refused());
+            }
+            return;
+        }
+        /*
+        DictionaryTree d = new DictionaryTree();
+        d.insert("word");
+        d.insert("hello");
+        d.insert("hell");
+        d.insert("testing");
+        d.insert("compsci");
+        System.out.println("done");
+
+        System.out.println("Tree size = " + d.size());
+        System.out.println("Tree height = " + d.height());
+        System.out.println("Longest word = " + d.longestWord());
+        System.out.println("Maximum branching = " + d.maximumBranching());
+        System.out.println("Number of leaves = " + d.numLeaves());
+        System.out.println("Tree contains 'hello'? " + d.contains("hello"));
+        System.out.println("There are " + d.allWords().size() + " words returned by the allWords() method");
+        System.out.println("There are " + d.size() + " nodes in the tree");
+        System.out.println("remove 'hello' -> " + d.remove("hell"));
+        System.out.println("Tree contains 'hello'? " + d.contains("hello"));
+        System.out.println("There are " + d.allWords().size() + " words returned by the allWords() method");
+        System.out.println("There are " + d.size() + " nodes in the tree");
+        */
+
+        System.out.println("Enter prefixes for prediction below.");
+
+        try (BufferedReader fromUser = new BufferedReader(new InputStreamReader(System.in))) {
+            for (String prefix = fromUser.readLine() ; prefix != null ; prefix = fromUser.readLine()) {
+                ReloadingDictionary live = loaded.get();
+                System.out.println("---> " + (live != null ? live.predict(prefix) : snapshot.get().predict(prefix)));
+            }
+        }
+    }
+
+}
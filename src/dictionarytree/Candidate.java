@@ -0,0 +1,76 @@
+package dictionarytree;
+
+/**
+ * An entry in the queue of a best-first search for the most popular words below a node, as used by
+ * DictionaryTree.mostPopular(n), RadixDictionaryTree.predict(prefix, n) and OffHeapDictionaryTree.predict(prefix, n)
+ * - either a whole sub-tree, ranked by the best popularity it holds, or the single word held at a node.
+ *
+ * Entries are ordered by distance (fewest first), then by score (most popular first). Entries which are equal in both
+ * are ordered by their position in a depth-first traversal (a node's own word before the words of its children, and
+ * children in the order of their labels), which is given by the path of child indexes from the node the search
+ * started at - so every kind of tree returns words of equal popularity in alphabetical order.
+ *
+ * @param <N> the type of the nodes of the tree searched (a node object, or the number of a node record)
+ */
+final class Candidate<N> implements Comparable<Candidate<N>> {
+    final N node;
+    final Candidate<N> parent;
+    final int index; // Position among the parent's children, -1 for the parent's own word.
+    final int depth;
+    final int score;
+    final boolean isWord;
+    final int distance; // The number of edits from the prefix searched for, used by DictionaryTree.predictFuzzy.
+    // The states of the pattern searched for by DictionaryTree.match, or null if every word in the sub-tree matches.
+    final long[] states;
+
+    Candidate(N node, Candidate<N> parent, int index, int score, boolean isWord) {
+        this(node, parent, index, score, isWord, 0);
+    }
+
+    Candidate(N node, Candidate<N> parent, int index, int score, boolean isWord, int distance) {
+        this(node, parent, index, score, isWord, distance, null);
+    }
+
+    Candidate(N node, Candidate<N> parent, int index, int score, boolean isWord, int distance, long[] states) {
+        this.node = node;
+        this.parent = parent;
+        this.index = index;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.score = score;
+        this.isWord = isWord;
+        this.distance = distance;
+        this.states = states;
+    }
+
+    @Override
+    public int compareTo(Candidate<N> other) {
+        if (distance != other.distance)
+            return Integer.compare(distance, other.distance); // Fewest edits first.
+        if (score != other.score)
+            return Integer.compare(other.score, score); // Most popular first.
+        return traversalOrder(this, other);
+    }
+
+    /**
+     * Compares the positions of two entries in a depth-first traversal of the tree.
+     */
+    private static <N> int traversalOrder(Candidate<N> a, Candidate<N> b) {
+        if (a == b)
+            return 0;
+        while (a.depth > b.depth) {
+            a = a.parent;
+            if (a == b)
+                return 1; // b is an ancestor of a, so comes first.
+        }
+        while (b.depth > a.depth) {
+            b = b.parent;
+            if (a == b)
+                return -1; // a is an ancestor of b, so comes first.
+        }
+        while (a.parent != b.parent) {
+            a = a.parent;
+            b = b.parent;
+        }
+        return Integer.compare(a.index, b.index);
+    }
+}
@@ -0,0 +1,176 @@
+package dictionarytree;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A dictionary which can be read from many threads while other threads insert and remove words.
+ *
+ * The words are held in a DictionaryTree which is never changed once it has been published. A writer copies the
+ * nodes on the path of its word (see DictionaryTree.copyPath), changes the copy, and then publishes the new root
+ * through a volatile field - every sub-tree off that path is shared between the old and new versions. Readers just
+ * read the current root, so contains, findPrefix and predict never take a lock or wait for a writer, and each call
+ * sees one complete version of the word set. Writers are applied one at a time.
+ */
+public class ConcurrentDictionaryTree {
+    // The current version of the tree. It must never be changed in place.
+    private volatile DictionaryTree root = new DictionaryTree();
+    // Held by writers, so that no update is lost between reading the root and publishing the new one.
+    private final Object writeLock = new Object();
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists, nothing will change.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        synchronized (writeLock) {
+            if (root.contains(word))
+                return;
+            DictionaryTree next = root.copyPath(word);
+            next.insert(word);
+            root = next;
+        }
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists, nothing will change.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        synchronized (writeLock) {
+            if (root.contains(word))
+                return;
+            DictionaryTree next = root.copyPath(word);
+            next.insert(word, popularity);
+            root = next;
+        }
+    }
+
+    /**
+     * Changes the popularity of a word which is already in this dictionary (see DictionaryTree.updatePopularity).
+     *
+     * @param word the word whose popularity is changed
+     * @param popularity the new popularity of the word
+     * @return true if the word was found and updated
+     */
+    boolean updatePopularity(String word, int popularity) {
+        return updatePopularity(word, popularity, true);
+    }
+
+    /**
+     * Changes the popularity of a word which is already in this dictionary, or takes it away (see
+     * DictionaryTree.updatePopularity(String, int, boolean)).
+     *
+     * @param word the word whose popularity is changed
+     * @param popularity the new popularity of the word
+     * @param hasPopularity whether the word has a popularity (if not, popularity is ignored)
+     * @return true if the word was found and updated
+     */
+    boolean updatePopularity(String word, int popularity, boolean hasPopularity) {
+        synchronized (writeLock) {
+            if (!root.contains(word))
+                return false;
+            DictionaryTree next = root.copyPath(word);
+            next.updatePopularity(word, popularity, hasPopularity);
+            root = next;
+            return true;
+        }
+    }
+
+    /**
+     * Removes the specified word from this dictionary.
+     *
+     * @param word the word to delete from this dictionary
+     * @return the same value as DictionaryTree.remove(word)
+     */
+    boolean remove(String word) {
+        synchronized (writeLock) {
+            if (!root.contains(word))
+                return false;
+            DictionaryTree next = root.copyPath(word);
+            boolean wasLeaf = next.remove(word);
+            root = next;
+            return wasLeaf;
+        }
+    }
+
+    /**
+     * Starts recording metrics for every version of the tree from now on (see DictionaryTree.enableMetrics). The
+     * metrics report the size of the current version.
+     *
+     * @return the metrics
+     */
+    DictionaryMetrics enableMetrics() {
+        DictionaryMetrics metrics = new DictionaryMetrics();
+        metrics.track(this::snapshot);
+        synchronized (writeLock) {
+            // Each new version is copied from the root, and the copy keeps its metrics.
+            DictionaryTree next = root.copyPath("");
+            next.enableMetrics(metrics);
+            root = next;
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the current version of the tree, so that several queries can be answered from the same word set.
+     * The returned tree (and any sub-tree found in it) is shared with other threads and must not be changed.
+     *
+     * @return the current version of the tree
+     */
+    DictionaryTree snapshot() {
+        return root;
+    }
+
+    boolean contains(String word) {
+        return root.contains(word);
+    }
+
+    Optional<Word> lookup(String word) {
+        return root.lookup(word);
+    }
+
+    /**
+     * @return the sub-tree of the prefix in the current version of the tree, which must not be changed
+     */
+    Optional<DictionaryTree> findPrefix(String prefix) {
+        return root.findPrefix(prefix);
+    }
+
+    Optional<String> predict(String prefix) {
+        return root.predict(prefix);
+    }
+
+    List<String> predict(String prefix, int n) {
+        return root.predict(prefix, n);
+    }
+
+    List<String> predict(String prefix, int offset, int n) {
+        return root.predict(prefix, offset, n);
+    }
+
+    int countWithPrefix(String prefix) {
+        return root.countWithPrefix(prefix);
+    }
+
+    List<Word> predictWords(String prefix, int n) {
+        return root.predictWords(prefix, n);
+    }
+
+    List<String> allWords() {
+        return root.allWords();
+    }
+
+    int numWords() {
+        return root.numWords();
+    }
+
+    int size() {
+        return root.size();
+    }
+}
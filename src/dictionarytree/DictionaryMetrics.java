@@ -0,0 +1,322 @@
+package dictionarytree;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Records how long the operations of a DictionaryTree take, enabled with DictionaryTree.enableMetrics(). For each
+ * operation there is a histogram of latencies (from which the count and throughput follow), and predictions also
+ * record how many nodes they visited. The size of the tree and an approximation of the heap it retains are read
+ * when asked for, from the counts the tree keeps up to date, so reading them never walks the tree (which may be
+ * changing in another thread). DictionaryTree.estimatedHeapBytes() gives a closer estimate on demand.
+ *
+ * Everything recorded can be read directly, through JMX (register()), or as it happens by a MetricsSink. Each
+ * operation is also a JFR event ("dictionarytree.Operation"), and the size of the tree is a periodic JFR event
+ * ("dictionarytree.TreeStatistics") - these are only written while a flight recording with them enabled is running.
+ *
+ * A tree without metrics only checks a null field per operation, so the cost of metrics which are off is close to
+ * nothing.
+ */
+public class DictionaryMetrics implements DictionaryMetricsMXBean {
+
+    /**
+     * The operations which are timed.
+     */
+    public enum Operation {
+        PREDICT, INSERT, REMOVE, LOAD
+    }
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Histogram nodesVisited = new Histogram();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+    private volatile long startNanos = System.nanoTime();
+    // The tree whose size is reported, if any.
+    private volatile Supplier<DictionaryTree> tree;
+    private Runnable periodicEvent;
+    private ObjectName registeredAs;
+
+    DictionaryMetrics() {
+        for (Operation operation : Operation.values())
+            latencies.put(operation, new Histogram());
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the sample to stop when the operation is over
+     */
+    Sample start(Operation operation) {
+        return new Sample(operation);
+    }
+
+    /**
+     * Reports the size of the tree given by the supplier, which is asked each time the size is read (so it may give a
+     * different tree each time, e.g. the current version of a ConcurrentDictionaryTree). While a tree is tracked, its
+     * size is also written as a periodic JFR event.
+     */
+    synchronized void track(Supplier<DictionaryTree> tree) {
+        this.tree = tree;
+        if (periodicEvent == null) {
+            periodicEvent = this::emitTreeStatistics;
+            FlightRecorder.addPeriodicEvent(TreeStatisticsEvent.class, periodicEvent);
+        }
+    }
+
+    /**
+     * Adds a sink which is given every operation recorded from now on.
+     */
+    void addSink(MetricsSink sink) {
+        sinks.add(sink);
+    }
+
+    void removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * @return the latencies of the given operation, in nanoseconds
+     */
+    Histogram latencies(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * @return the number of nodes visited by each prediction
+     */
+    Histogram nodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * Registers this as a platform MXBean, under "dictionarytree:type=DictionaryMetrics,name=" + name.
+     *
+     * @param name distinguishes this from the metrics of other trees
+     * @throws IllegalStateException if JMX refused the registration, e.g. because the name is already taken
+     */
+    synchronized void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("dictionarytree:type=DictionaryMetrics,name="
+                    + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            registeredAs = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the metrics as " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters this from JMX (if register() was called) and stops the periodic JFR event.
+     */
+    synchronized void close() {
+        if (registeredAs != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+            } catch (JMException e) {
+                // Already unregistered by someone else.
+            }
+            registeredAs = null;
+        }
+        if (periodicEvent != null) {
+            FlightRecorder.removePeriodicEvent(periodicEvent);
+            periodicEvent = null;
+        }
+    }
+
+    private void emitTreeStatistics() {
+        Supplier<DictionaryTree> supplier = tree;
+        if (supplier == null)
+            return;
+        DictionaryTree current = supplier.get();
+        TreeStatisticsEvent event = new TreeStatisticsEvent();
+        event.words = current.numWords();
+        event.nodes = current.size();
+        event.height = current.height();
+        event.approximateHeapBytes = current.approximateHeapBytes();
+        event.commit();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> counts.put(operation.name(), histogram.count()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getThroughputPerSecond() {
+        double seconds = Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        Map<String, Double> throughput = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> throughput.put(operation.name(), histogram.count() / seconds));
+        return throughput;
+    }
+
+    @Override
+    public Map<String, Double> getMeanMicros() {
+        Map<String, Double> means = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> means.put(operation.name(), histogram.mean() / 1e3));
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getP50Micros() {
+        return percentileMicros(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    @Override
+    public Map<String, Double> getP999Micros() {
+        return percentileMicros(0.999);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        Map<String, Double> maxima = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) -> maxima.put(operation.name(), histogram.max() / 1e3));
+        return maxima;
+    }
+
+    private Map<String, Double> percentileMicros(double fraction) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        latencies.forEach((operation, histogram) ->
+                percentiles.put(operation.name(), histogram.percentile(fraction) / 1e3));
+        return percentiles;
+    }
+
+    @Override
+    public double getMeanNodesVisited() {
+        return nodesVisited.mean();
+    }
+
+    @Override
+    public long getP99NodesVisited() {
+        return nodesVisited.percentile(0.99);
+    }
+
+    @Override
+    public long getWords() {
+        Supplier<DictionaryTree> supplier = tree;
+        return supplier == null ? -1 : supplier.get().numWords();
+    }
+
+    @Override
+    public long getNodes() {
+        Supplier<DictionaryTree> supplier = tree;
+        return supplier == null ? -1 : supplier.get().size();
+    }
+
+    @Override
+    public long getApproximateHeapBytes() {
+        Supplier<DictionaryTree> supplier = tree;
+        return supplier == null ? -1 : supplier.get().approximateHeapBytes();
+    }
+
+    /**
+     * Forgets everything recorded so far, and restarts the throughput clock.
+     */
+    @Override
+    public void reset() {
+        for (Histogram histogram : latencies.values())
+            histogram.reset();
+        nodesVisited.reset();
+        startNanos = System.nanoTime();
+    }
+
+    public String toString() {
+        return "DictionaryMetrics(counts = " + getCounts() + ", p50 = " + getP50Micros() + "us, p99 = "
+                + getP99Micros() + "us, mean nodes visited = " + getMeanNodesVisited() + ")";
+    }
+
+    /**
+     * One operation being timed.
+     */
+    final class Sample {
+        private final Operation operation;
+        private final long start;
+        private final OperationEvent event;
+        // Counted by predictions as they search the tree.
+        int nodesVisited;
+
+        private Sample(Operation operation) {
+            this.operation = operation;
+            this.event = new OperationEvent();
+            this.event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Records the operation, which is now over.
+         *
+         * @param key the word, prefix or file the operation was given (only used for the JFR event)
+         */
+        void stop(String key) {
+            long nanos = System.nanoTime() - start;
+            latencies.get(operation).record(nanos);
+            if (operation == Operation.PREDICT)
+                DictionaryMetrics.this.nodesVisited.record(nodesVisited);
+            for (MetricsSink sink : sinks)
+                sink.record(operation, nanos, nodesVisited);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.key = key;
+                event.nodesVisited = nodesVisited;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("dictionarytree.Operation")
+    @Label("Dictionary Operation")
+    @Category("Dictionary Tree")
+    @Description("A prediction, insert, remove or load of a DictionaryTree with metrics enabled")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Key")
+        @Description("The word, prefix or file given to the operation")
+        String key;
+        @Label("Nodes Visited")
+        int nodesVisited;
+    }
+
+    @Name("dictionarytree.TreeStatistics")
+    @Label("Dictionary Tree Statistics")
+    @Category("Dictionary Tree")
+    @Period("10 s")
+    @StackTrace(false)
+    static final class TreeStatisticsEvent extends Event {
+        @Label("Words")
+        int words;
+        @Label("Nodes")
+        int nodes;
+        @Label("Height")
+        int height;
+        @Label("Approximate Heap")
+        @DataAmount
+        long approximateHeapBytes;
+    }
+}
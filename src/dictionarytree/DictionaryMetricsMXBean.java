@@ -0,0 +1,46 @@
+package dictionarytree;
+
+import java.util.Map;
+
+/**
+ * The JMX view of a DictionaryMetrics (see DictionaryMetrics.register). Maps are keyed by the name of the operation,
+ * e.g. "PREDICT", and latencies are in microseconds.
+ */
+public interface DictionaryMetricsMXBean {
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getThroughputPerSecond();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP50Micros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getP999Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    double getMeanNodesVisited();
+
+    long getP99NodesVisited();
+
+    /**
+     * @return the number of words in the tree, or -1 if no tree is tracked
+     */
+    long getWords();
+
+    /**
+     * @return the number of nodes in the tree, or -1 if no tree is tracked
+     */
+    long getNodes();
+
+    /**
+     * @return the approximate heap retained by the tree (see DictionaryTree.approximateHeapBytes), or -1 if no tree
+     * is tracked
+     */
+    long getApproximateHeapBytes();
+
+    void reset();
+}
@@ -0,0 +1,46 @@
+package dictionarytree;
+
+import java.util.List;
+
+/**
+ * One part of a ShardedDictionary, holding the words which its partitioner assigns to it. The sharded dictionary
+ * only talks to its shards through this interface, so a shard may be a tree in the same process (LocalShard) or a
+ * client of a dictionary held elsewhere.
+ *
+ * A shard may be called from several threads at once - a prediction for a prefix held by several shards is sent to
+ * all of them in parallel.
+ */
+public interface DictionaryShard {
+
+    /**
+     * Inserts the given word, if it is not already in the shard.
+     */
+    void insert(String word);
+
+    /**
+     * Inserts the given word with the given popularity, if it is not already in the shard.
+     */
+    void insert(String word, int popularity);
+
+    /**
+     * Removes the given word from the shard.
+     *
+     * @return the same value as DictionaryTree.remove(word)
+     */
+    boolean remove(String word);
+
+    boolean contains(String word);
+
+    /**
+     * Predicts the (at most) n most popular words in the shard starting with the given prefix (every word, if the
+     * prefix is empty), in the order given by DictionaryTree.predict(prefix, n).
+     *
+     * @return the words found, with their popularities, most popular first
+     */
+    List<Word> predict(String prefix, int n);
+
+    /**
+     * @return the number of words held by the shard
+     */
+    int numWords();
+}
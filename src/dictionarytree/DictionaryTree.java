@@ -0,0 +1,1864 @@
+package dictionarytree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+// Since we can check the DictionaryTree's array of children for any child trees, we dont need seperate classes for
+// Empty and Cons, since we can check the array to see if a leaf or not.
+public class DictionaryTree implements Iterable<Word> {
+    // The sub-trees of this node, held in two arrays of the same length, sorted by the character to branch on.
+    // keys[i] - character to branch on / branch in tree.
+    // kids[i] - the child tree.
+    // Lookups are a binary search of a char[], so they never box a Character or allocate anything.
+    private char[] keys = NO_KEYS;
+    private DictionaryTree[] kids = NO_KIDS;
+    // The word which ends at this node, or null if no word ends here (i.e. this node is only part of longer words).
+    private String word;
+    // The popularity of the word, if hasPopularity is set.
+    private int popularity;
+    private boolean hasPopularity;
+    // The greatest popularity of any word held in this sub-tree, used to prune the search in predict(prefix, n).
+    private int bestPopularity;
+    // The least popularity (UNRANKED for a word without one) of any word in this sub-tree, or NO_WORDS if it holds
+    // none, used to skip whole sub-trees in predict(prefix, offset, n).
+    private int worstPopularity = NO_WORDS;
+    // Statistics of this sub-tree, kept up to date by insert and remove so that they never need a walk of the tree.
+    private int nodeCount = 1;
+    private int wordCount;
+    private int leafCount = 1; // A node with no children is a leaf.
+    private int height;
+    private int maxBranching;
+    // The cache, substring index and metrics enabled on this tree, or null if none are. They are only ever enabled
+    // on the node the tree is used through (normally the root), so every other node holds a single null here.
+    private Attachments attachments;
+
+    // Sub-trees with at most this many nodes are folded sequentially by parallelFold(), as forking a task costs more
+    // than folding them.
+    static final int PARALLEL_FOLD_THRESHOLD = 4096;
+    // Estimated sizes for estimatedHeapBytes(): a node (a 12 byte header, 4 references, 8 ints and a boolean, rounded
+    // up to 8 bytes), the header of an array, and a String object without its array.
+    private static final long NODE_BYTES = 64;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long STRING_BYTES = 24;
+    // The length of word assumed by approximateHeapBytes(), which does not know the lengths of the words.
+    private static final long ASSUMED_WORD_CHARS = 8;
+    // Ranking value given to words which were inserted without a popularity, so they are predicted last.
+    private static final int UNRANKED = Integer.MIN_VALUE;
+    // The worst popularity of a sub-tree which holds no words.
+    private static final int NO_WORDS = Integer.MAX_VALUE;
+    // Shared by every leaf, since arrays are replaced rather than changed when a child is added or removed.
+    private static final char[] NO_KEYS = new char[0];
+    private static final DictionaryTree[] NO_KIDS = new DictionaryTree[0];
+
+    /**
+     * Constructor to create new node in the tree.
+     * @param word
+     * @param popularity
+     */
+    DictionaryTree(Optional<String> word, Optional<Integer> popularity) {
+        this.word = word.orElse(null);
+        this.popularity = popularity.orElse(0);
+        this.hasPopularity = popularity.isPresent();
+        this.bestPopularity = ranking();
+        this.worstPopularity = word.isPresent() ? ranking() : NO_WORDS;
+        this.wordCount = word.isPresent() ? 1 : 0;
+    }
+
+    DictionaryTree() {
+        this.bestPopularity = UNRANKED;
+    }
+
+    /**
+     * Copy constructor - the copy has its own array of children, but shares the child trees themselves with the
+     * original. The prediction cache and substring index are not copied, but the metrics are shared.
+     *
+     * @param original the node to copy
+     */
+    private DictionaryTree(DictionaryTree original) {
+        this.keys = original.keys; // Never changed in place.
+        this.kids = original.kids.clone();
+        this.word = original.word;
+        this.popularity = original.popularity;
+        this.hasPopularity = original.hasPopularity;
+        this.bestPopularity = original.bestPopularity;
+        this.worstPopularity = original.worstPopularity;
+        this.nodeCount = original.nodeCount;
+        this.wordCount = original.wordCount;
+        this.leafCount = original.leafCount;
+        this.height = original.height;
+        this.maxBranching = original.maxBranching;
+        if (original.metrics() != null)
+            attachments().metrics = original.metrics();
+    }
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists, nothing will change.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        DictionaryMetrics.Sample sample = metrics() == null ? null
+                : metrics().start(DictionaryMetrics.Operation.INSERT);
+        try {
+            // insert the word with an empty value for popularity, since no popularity has been given for the word.
+            if (!contains(word)) { // If the word is not in the tree
+                int before = numWords();
+                insertNewWord(word, 0, 0, false);
+                assert(before == numWords() - 1); // Tree should now contain one extra word.
+                if (cache() != null)
+                    cache().invalidate(word);
+                if (substrings() != null)
+                    substrings().insert(word, UNRANKED);
+            }
+        } finally {
+            if (sample != null)
+                sample.stop(word);
+        }
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists, the popularity will be overriden by the given value.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word (line number)
+     */
+    void insert(String word, int popularity) {
+
+        // Assign a popularity value to the word being added (i.e. the line in the text file) so that the word can be
+        // compared to other words of the same prefix.
+        DictionaryMetrics.Sample sample = metrics() == null ? null
+                : metrics().start(DictionaryMetrics.Operation.INSERT);
+        try {
+            if (!contains(word)) { // If the word is in the tree but with no popularity.
+                insertNewWord(word, 0, popularity, true);
+                if (cache() != null)
+                    cache().invalidate(word);
+                if (substrings() != null)
+                    substrings().insert(word, popularity);
+            }
+        } finally {
+            if (sample != null)
+                sample.stop(word);
+        }
+    }
+
+    /**
+     * Changes the popularity of a word which is already in this dictionary, e.g. as it is learned from what users
+     * select (see PopularityLearner). Only the nodes on the path of the word are visited: each keeps the best
+     * popularity of its sub-tree, which a raised popularity simply replaces when it is greater, and a lowered one is
+     * found again from the node's own word and its children only where the word was the best. The walk stops at the
+     * first node whose best popularity does not change, so an update takes O(word length) time (times the branching
+     * where a best word is lowered), and predict(prefix, n) reflects it straight away.
+     *
+     * @param word the word whose popularity is changed
+     * @param popularity the new popularity of the word
+     * @return true if the word was found and updated, false if it is not in this dictionary
+     */
+    boolean updatePopularity(String word, int popularity) {
+        return updatePopularity(word, popularity, true);
+    }
+
+    /**
+     * Changes the popularity of a word which is already in this dictionary, or takes it away so that the word is
+     * ranked as one inserted without a popularity (see updatePopularity(String, int)).
+     *
+     * @param word the word whose popularity is changed
+     * @param popularity the new popularity of the word
+     * @param hasPopularity whether the word has a popularity (if not, popularity is ignored)
+     * @return true if the word was found and updated, false if it is not in this dictionary
+     */
+    boolean updatePopularity(String word, int popularity, boolean hasPopularity) {
+        if (word.isEmpty())
+            return false;
+        DictionaryTree[] path = new DictionaryTree[word.length() + 1];
+        path[0] = this;
+        for (int i = 0 ; i < word.length() ; i++) {
+            path[i + 1] = path[i].child(word.charAt(i));
+            if (path[i + 1] == null)
+                return false;
+        }
+        DictionaryTree node = path[word.length()];
+        if (node.word == null)
+            return false;
+        int old = node.ranking();
+        node.popularity = hasPopularity ? popularity : 0;
+        node.hasPopularity = hasPopularity;
+        int ranking = node.ranking();
+        // Update the best and worst popularities from the word up, until both stay the same (then so do those above).
+        for (int d = word.length() ; d >= 0 && ranking != old ; d--) {
+            DictionaryTree on = path[d];
+            int best = on.bestPopularity;
+            int worst = on.worstPopularity;
+            if (ranking >= best)
+                on.bestPopularity = ranking;
+            else if (best == old)
+                on.bestPopularity = on.bestOfChildren(on.ranking());
+            if (ranking <= worst)
+                on.worstPopularity = ranking;
+            else if (worst == old)
+                on.worstPopularity = on.worstOfChildren(on.word != null ? on.ranking() : NO_WORDS);
+            if (on.bestPopularity == best && on.worstPopularity == worst)
+                break;
+        }
+        if (cache() != null)
+            cache().invalidate(word);
+        if (substrings() != null)
+            substrings().update(word, ranking);
+        return true;
+    }
+
+    /**
+     * @return the greater of the given ranking and the best popularity of every child of this node
+     */
+    private int bestOfChildren(int best) {
+        for (DictionaryTree child : kids)
+            best = Math.max(best, child.bestPopularity);
+        return best;
+    }
+
+    /**
+     * @return the lesser of the given ranking and the worst popularity of every child of this node
+     */
+    private int worstOfChildren(int worst) {
+        for (DictionaryTree child : kids)
+            worst = Math.min(worst, child.worstPopularity);
+        return worst;
+    }
+
+    /**
+     * Helper method for the insert() methods. The method traverses the tree by each character in the
+     * word (e.g. if 'hello' is being added, h is traversed, then e, then l) until a node in the tree no longer has
+     * the required child to branch to, (e.g. the child doesnt contain 'o' so hello isnt already in the tree).
+     *
+     *
+     * @param word The word that is to be inserted.
+     * @param i The index that we have reached in the word (during the recursive calls).
+     * @param popularity The popularity value of the word being added.
+     * @param hasPopularity Whether the word has a popularity value (if not, popularity is ignored).
+     */
+    void insertNewWord(String word, int i, int popularity, boolean hasPopularity) {
+        int ranking = hasPopularity ? popularity : UNRANKED;
+        // Every node on the path of the word now holds it in its sub-tree.
+        bestPopularity = Math.max(bestPopularity, ranking);
+        worstPopularity = Math.min(worstPopularity, ranking);
+        // The branching character is the next character in the word to be added.
+        char branchChar = word.charAt(i);
+        // Remember the child's statistics, so that this node's can be updated by the difference afterwards.
+        boolean wasLeaf = isLeaf();
+        DictionaryTree child = child(branchChar);
+        int childNodes = child == null ? 0 : child.nodeCount;
+        int childWords = child == null ? 0 : child.wordCount;
+        int childLeaves = child == null ? 0 : child.leafCount;
+
+        // If the branching character is already in the tree, look to follow the path.
+        if (child != null) {
+            // If the end of the word has not already been reached. Make a recursive call to continue following the path.
+            if (i < word.length() - 1)
+                child.insertNewWord(word, i + 1, popularity, hasPopularity);
+            // If the end of the word is reached (and the word already has a 'position' in the tree to be placed in.
+            else {
+                // Set the word and popularity.
+                if (child.word == null)
+                    child.wordCount++;
+                child.setWord(word, popularity, hasPopularity);
+                child.bestPopularity = Math.max(child.bestPopularity, ranking);
+                child.worstPopularity = Math.min(child.worstPopularity, ranking);
+            }
+        } else { // Else create a new path for the word.
+            child = new DictionaryTree();
+            addChild(branchChar, child);
+            if (i == word.length() - 1) { // The branching character is the last character in the addWord.
+                child.setWord(word, popularity, hasPopularity);
+                child.wordCount = 1;
+                child.bestPopularity = ranking;
+                child.worstPopularity = ranking;
+            }
+            else {
+                // If the end of the word has not been reached, add a node for the word (but dont add the word - leave
+                // it null until the word is specifically entered)
+                // Recursive call
+                child.insertNewWord(word, i + 1, popularity, hasPopularity);
+            }
+        }
+
+        // Inserting can only make the sub-tree grow, so the statistics are updated from the child alone.
+        nodeCount += child.nodeCount - childNodes;
+        wordCount += child.wordCount - childWords;
+        leafCount = (wasLeaf ? 0 : leafCount) + child.leafCount - childLeaves;
+        height = Math.max(height, child.height + 1);
+        maxBranching = Math.max(maxBranching, Math.max(kids.length, child.maxBranching));
+    }
+
+    /**
+     * Sets the word which ends at this node (or clears it, if word is null).
+     */
+    private void setWord(String word, int popularity, boolean hasPopularity) {
+        this.word = word;
+        this.popularity = word == null ? 0 : popularity;
+        this.hasPopularity = word != null && hasPopularity;
+    }
+
+    /**
+     * @return the value the word at this node is ranked by - its popularity, or UNRANKED if it has no popularity (or
+     * there is no word here)
+     */
+    private int ranking() {
+        return word != null && hasPopularity ? popularity : UNRANKED;
+    }
+
+    /**
+     * @return the position of the given character in keys, or (-(insertion point) - 1) if there is no such child
+     */
+    private int indexOf(char branchChar) {
+        return Arrays.binarySearch(keys, branchChar);
+    }
+
+    /**
+     * Adds a child, which must not already exist, keeping the children sorted by character.
+     */
+    private void addChild(char branchChar, DictionaryTree child) {
+        int at = -indexOf(branchChar) - 1;
+        char[] newKeys = new char[keys.length + 1];
+        DictionaryTree[] newKids = new DictionaryTree[kids.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, at);
+        System.arraycopy(kids, 0, newKids, 0, at);
+        newKeys[at] = branchChar;
+        newKids[at] = child;
+        System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+        System.arraycopy(kids, at, newKids, at + 1, kids.length - at);
+        keys = newKeys;
+        kids = newKids;
+    }
+
+    /**
+     * Removes the child at the given position in the arrays of children.
+     */
+    private void removeChild(int at) {
+        if (kids.length == 1) {
+            keys = NO_KEYS;
+            kids = NO_KIDS;
+            return;
+        }
+        char[] newKeys = new char[keys.length - 1];
+        DictionaryTree[] newKids = new DictionaryTree[kids.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, at);
+        System.arraycopy(kids, 0, newKids, 0, at);
+        System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+        System.arraycopy(kids, at + 1, newKids, at, kids.length - at - 1);
+        keys = newKeys;
+        kids = newKids;
+    }
+
+    /**
+     * Removes the specified word from this dictionary.
+     * Returns true if the caller can delete this node without losing part of the dictionary,
+     * i.e. if this node has no children after deleting the specified word.
+     *
+     * @param word the word to delete from this dictionary
+     * @return whether or not the parent can delete this node from its children
+     */
+    boolean remove(String word) {
+        DictionaryMetrics.Sample sample = metrics() == null ? null
+                : metrics().start(DictionaryMetrics.Operation.REMOVE);
+        try {
+            int numWordsBefore = numWords();
+            if (contains(word)) {
+                boolean wasLeaf = removeWord(word, 0);
+
+                assert(numWords() == (numWordsBefore - 1)); // Assert that exactly one word is removed from the tree.
+                if (cache() != null)
+                    cache().invalidate(word);
+                if (substrings() != null)
+                    substrings().remove(word);
+
+                return wasLeaf;
+            } else return false; // If no word present, return false.
+        } finally {
+            if (sample != null)
+                sample.stop(word);
+        }
+    }
+
+    /**
+     * Helper method for remove(). The method follows the word down the tree, clears it from the node at its end and
+     * then, on the way back up, deletes every node which no longer holds a word or has any children. Only the nodes
+     * on the path of the word are visited, and no other word is changed.
+     *
+     * @param word The word that is to be removed (which must be in the tree).
+     * @param i The index that we have reached in the word (during the recursive calls).
+     * @return true if the node at the end of the word was a leaf
+     */
+    private boolean removeWord(String word, int i) {
+        int at = indexOf(word.charAt(i));
+        DictionaryTree child = kids[at];
+        boolean wasLeaf;
+        if (i < word.length() - 1) {
+            wasLeaf = child.removeWord(word, i + 1);
+        } else {
+            // The end of the word is reached, so take the word out of the node.
+            wasLeaf = child.isLeaf();
+            child.setWord(null, 0, false);
+            child.recomputeStatistics();
+        }
+        // If the child is no longer part of any word, it can be deleted.
+        if (child.word == null && child.isLeaf())
+            removeChild(at);
+        recomputeStatistics();
+        return wasLeaf;
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this tree; false otherwise
+     */
+    boolean contains(String word) {
+        // Follow the path of the word one character at a time, without creating a substring at each step.
+        DictionaryTree node = this;
+        for (int i = 0 ; i < word.length() ; i++) {
+            node = node.child(word.charAt(i));
+            if (node == null)
+                return false;
+        }
+        // The word is only present if it has been inserted, not just as part of a longer word.
+        return word.length() > 0 && node.word != null;
+    }
+
+    /**
+     * Looks up a word together with its popularity.
+     *
+     * @param word the word to look up
+     * @return the word, with its popularity if it was given one, or an empty optional if it is not in this dictionary
+     */
+    Optional<Word> lookup(String word) {
+        DictionaryTree node = this;
+        for (int i = 0 ; i < word.length() && node != null ; i++)
+            node = node.child(word.charAt(i));
+        return node != null && word.length() > 0 && node.word != null ? Optional.of(node.toWord()) : Optional.empty();
+    }
+
+    /**
+     * Predicts the single most popular word which starts with the given prefix, other than the prefix itself - as
+     * predict(prefix, n) with n == 1, but never suggesting the word already typed. The best-first search of
+     * predict(prefix, n) only needs the best two words for this, so the rest of the sub-tree is not visited.
+     *
+     * @param prefix the prefix of the word returned (an empty prefix predicts from the whole tree)
+     * @return the most popular word that starts with the given prefix, or an empty optional
+     * if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        DictionaryMetrics.Sample sample = metrics() == null ? null
+                : metrics().start(DictionaryMetrics.Operation.PREDICT);
+        try {
+            Optional<DictionaryTree> foundPrefix = findPrefix(prefix);
+            if (!foundPrefix.isPresent())
+                return Optional.empty();
+            if (sample != null)
+                sample.nodesVisited = prefix.length();
+            for (String word : foundPrefix.get().mostPopular(2, sample)) {
+                if (!word.equals(prefix))
+                    return Optional.of(word);
+            }
+            return Optional.empty();
+        } finally {
+            if (sample != null)
+                sample.stop(prefix);
+        }
+    }
+
+    /**
+     * Predicts the (at most) n most popular full English words based on the specified prefix.
+     * If no word with the specified prefix is found, an empty list is returned.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the length of the list to be returned / number of words to be returned
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        DictionaryMetrics.Sample sample = metrics() == null ? null
+                : metrics().start(DictionaryMetrics.Operation.PREDICT);
+        try {
+            if (cache() != null) {
+                List<String> cached = cache().get(prefix, n);
+                if (cached != null)
+                    return new ArrayList<>(cached);
+            }
+            // Traverse the tree until we reach the node which contains the prefix.
+            Optional<DictionaryTree> foundPrefix = findPrefix(prefix);
+            List<String> predictions;
+            // If the prefix does not exist in the tree, return an empty list of words.
+            if (foundPrefix.equals(Optional.empty())) {
+                predictions = new ArrayList<>();
+            } else {
+                if (sample != null)
+                    sample.nodesVisited = prefix.length();
+                predictions = foundPrefix.get().mostPopular(n, sample);
+            }
+            if (cache() != null)
+                cache().put(prefix, n, predictions);
+            return predictions;
+        } finally {
+            if (sample != null)
+                sample.stop(prefix);
+        }
+    }
+
+    /**
+     * Counts the words which start with the given prefix (including the prefix itself, if it is a word), e.g. for
+     * showing how many matches there are. Every node keeps the number of words in its sub-tree, so this only follows
+     * the prefix down the tree.
+     *
+     * @param prefix the prefix of the words counted (an empty prefix counts every word)
+     * @return the number of words in this tree with the prefix
+     */
+    int countWithPrefix(String prefix) {
+        return findPrefix(prefix).map(node -> node.wordCount).orElse(0);
+    }
+
+    /**
+     * Predicts a page of the words with the given prefix: the words ranked offset to offset + n - 1 in the order of
+     * predict(prefix, n), so that predict(prefix, 0, n) gives the same words as predict(prefix, n), and each later
+     * page follows on from the one before.
+     *
+     * The search is the best-first search of predict(prefix, n), but a sub-tree taken off the queue whose words all
+     * rank before every word still in the queue (its worst popularity is greater than the best anywhere else) is
+     * skipped as a whole, counting its words from the number of words it holds, when they all come before the page.
+     * So the earlier pages are mostly passed over without visiting their words. The prediction cache is not used.
+     *
+     * @param prefix the prefix of the words found (an empty prefix pages through the whole tree)
+     * @param offset the number of the most popular words to pass over
+     * @param n the number of words to be returned
+     * @return the (at most) n words ranked from offset on, most popular first
+     */
+    List<String> predict(String prefix, int offset, int n) {
+        DictionaryMetrics.Sample sample = metrics() == null ? null
+                : metrics().start(DictionaryMetrics.Operation.PREDICT);
+        try {
+            List<String> page = new ArrayList<>();
+            DictionaryTree start = findPrefix(prefix).orElse(null);
+            if (start == null)
+                return page;
+            if (sample != null)
+                sample.nodesVisited = prefix.length();
+            PriorityQueue<Candidate<DictionaryTree>> queue = new PriorityQueue<>();
+            queue.add(new Candidate<>(start, null, 0, start.bestPopularity, false));
+            int skip = offset;
+            while (page.size() < n && !queue.isEmpty()) {
+                Candidate<DictionaryTree> next = queue.poll();
+                DictionaryTree node = next.node;
+                if (next.isWord) {
+                    if (skip > 0)
+                        skip--;
+                    else
+                        page.add(node.word);
+                    continue;
+                }
+                // The words of this sub-tree are the next ones in order - if the page starts after them, pass them by.
+                if (node.wordCount <= skip && (queue.isEmpty() || node.worstPopularity > queue.peek().score)) {
+                    skip -= node.wordCount;
+                    continue;
+                }
+                if (sample != null)
+                    sample.nodesVisited++;
+                if (node.word != null)
+                    queue.add(new Candidate<>(node, next, -1, node.ranking(), true));
+                for (int index = 0 ; index < node.kids.length ; index++) {
+                    DictionaryTree child = node.kids[index];
+                    queue.add(new Candidate<>(child, next, index, child.bestPopularity, false));
+                }
+            }
+            return page;
+        } finally {
+            if (sample != null)
+                sample.stop(prefix);
+        }
+    }
+
+    /**
+     * Predicts the (at most) n most popular words for each of many prefixes at once, with the same result for each as
+     * predict(prefix, n) (an empty prefix gives the most popular words of the whole tree).
+     *
+     * The prefixes are sorted, so that a prefix directly follows the shorter prefixes it extends. The path to each
+     * prefix is then walked on from the node of the longest of them rather than from the root, and the prediction
+     * for that prefix is used to answer this one where it can (see predictFrom) - so a batch of prefixes which share
+     * their starts visits each shared part of the tree once. Prefixes with different first characters lie in
+     * independent sub-trees, and are predicted in parallel.
+     *
+     * The tree must not be changed while this runs. The prediction cache is not used.
+     *
+     * @param prefixes the prefixes to predict words for
+     * @param n the number of words to be returned for each prefix
+     * @return the predictions for each distinct prefix
+     */
+    Map<String, List<String>> predictAll(Collection<String> prefixes, int n) {
+        TreeSet<String> sorted = new TreeSet<>(prefixes);
+        Map<String, List<String>> results = new HashMap<>();
+        // The sorted prefixes with each first character are next to each other (and the empty prefix, which has
+        // none, is a group of its own).
+        List<List<String>> groups = new ArrayList<>();
+        for (String prefix : sorted) {
+            List<String> last = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+            if (last == null || last.get(0).isEmpty() || last.get(0).charAt(0) != prefix.charAt(0)) {
+                last = new ArrayList<>();
+                groups.add(last);
+            }
+            last.add(prefix);
+        }
+        List<Map<String, List<String>>> groupResults = groups.parallelStream()
+                .map(group -> predictGroup(group, n))
+                .collect(Collectors.toList());
+        for (Map<String, List<String>> groupResult : groupResults)
+            results.putAll(groupResult);
+        return results;
+    }
+
+    /**
+     * Helper method for predictAll() - predicts the words for a sorted group of prefixes.
+     *
+     * @param group the prefixes, in sorted order
+     * @param n the number of words to be returned for each prefix
+     * @return the predictions for each prefix of the group
+     */
+    private Map<String, List<String>> predictGroup(List<String> group, int n) {
+        Map<String, List<String>> results = new HashMap<>();
+        // The prefixes which the current prefix extends (starting with the empty prefix), with their nodes (null
+        // if a prefix is not in the tree) and predictions.
+        ArrayList<String> pathPrefixes = new ArrayList<>();
+        ArrayList<DictionaryTree> pathNodes = new ArrayList<>();
+        ArrayList<List<String>> pathResults = new ArrayList<>();
+        pathPrefixes.add("");
+        pathNodes.add(this);
+        pathResults.add(null);
+        for (String prefix : group) {
+            int top = pathPrefixes.size() - 1;
+            while (!prefix.startsWith(pathPrefixes.get(top))) {
+                pathPrefixes.remove(top);
+                pathNodes.remove(top);
+                pathResults.remove(top);
+                top--;
+            }
+            DictionaryTree node = pathNodes.get(top);
+            for (int i = pathPrefixes.get(top).length() ; i < prefix.length() && node != null ; i++)
+                node = node.child(prefix.charAt(i));
+            List<String> result;
+            if (node == null)
+                result = new ArrayList<>();
+            else
+                result = predictFrom(pathResults.get(top), prefix, n);
+            if (result == null)
+                result = node.mostPopular(n);
+            results.put(prefix, result);
+            pathPrefixes.add(prefix);
+            pathNodes.add(node);
+            pathResults.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Works out the prediction for a prefix from the prediction for a shorter prefix which it extends. Every word
+     * with the longer prefix which is not in the shorter prefix's prediction is less popular than all of it, so the
+     * words of that prediction with the longer prefix are the answer, if there are n of them or if the shorter
+     * prefix's prediction held every word it could.
+     *
+     * @param shorter the prediction of (at most) n words for the shorter prefix, or null if it is not known
+     * @return the prediction for the prefix, or null if it cannot be known from the shorter prefix's prediction
+     */
+    private static List<String> predictFrom(List<String> shorter, String prefix, int n) {
+        if (shorter == null)
+            return null;
+        List<String> result = new ArrayList<>();
+        for (String word : shorter) {
+            if (word.startsWith(prefix))
+                result.add(word);
+        }
+        if (result.size() == n || shorter.size() < n)
+            return result;
+        return null;
+    }
+
+    /**
+     * @return the attachments of this node, which are created if it has none yet
+     */
+    private Attachments attachments() {
+        if (attachments == null)
+            attachments = new Attachments();
+        return attachments;
+    }
+
+    private PredictionCache cache() {
+        return attachments == null ? null : attachments.cache;
+    }
+
+    private SubstringIndex substrings() {
+        return attachments == null ? null : attachments.substrings;
+    }
+
+    private DictionaryMetrics metrics() {
+        return attachments == null ? null : attachments.metrics;
+    }
+
+    /**
+     * The features which can be enabled on a tree, held apart from the nodes so that a node only needs one reference
+     * for all of them.
+     */
+    private static final class Attachments {
+        // Cache of predict(prefix, n) results (see enablePredictionCache).
+        private PredictionCache cache;
+        // Index of the words by their substrings (see enableSubstringIndex).
+        private SubstringIndex substrings;
+        // Timings of the operations on the tree (see enableMetrics).
+        private DictionaryMetrics metrics;
+    }
+
+    /**
+     * Builds an index of the words of this tree by their substrings, so that predictContaining and predictEndingWith
+     * can be answered without a walk of the whole tree (see SubstringIndex). Inserting, removing or changing the
+     * popularity of a word through this tree keeps the index up to date - as long as the tree is only changed through
+     * this node. Its memory is reported by SubstringIndex.estimatedHeapBytes().
+     *
+     * @return the index
+     */
+    SubstringIndex enableSubstringIndex() {
+        List<String> words = new ArrayList<>(numWords());
+        List<Integer> rankings = new ArrayList<>(numWords());
+        new WordSpliterator<>(this, node -> node).forEachRemaining(node -> {
+            words.add(node.word);
+            rankings.add(node.ranking());
+        });
+        return attachments().substrings = new SubstringIndex(words,
+                rankings.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Removes the index built by enableSubstringIndex(), if any.
+     */
+    void disableSubstringIndex() {
+        if (attachments != null)
+            attachments.substrings = null;
+    }
+
+    /**
+     * Predicts the (at most) n most popular words which contain the given string anywhere, e.g. "tion". Needs the
+     * substring index (see enableSubstringIndex). Unlike the other read methods, this can change the index, by
+     * swapping in a merge which has been built in the background - the index locks itself while it does, so this may
+     * still be called from several threads at once.
+     *
+     * @param infix the string the words contain
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words containing the string, most popular first
+     * @throws IllegalStateException if the substring index is not enabled, or a merge of the index failed (the index
+     * is still complete, and the merge is tried again later)
+     */
+    List<String> predictContaining(String infix, int n) {
+        return substringIndex().containing(infix, n);
+    }
+
+    /**
+     * Predicts the (at most) n most popular words which end with the given string, e.g. "ness". Needs the substring
+     * index (see enableSubstringIndex). As predictContaining, this can change the index, which locks itself to do so.
+     *
+     * @param suffix the string the words end with
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words ending with the string, most popular first
+     * @throws IllegalStateException if the substring index is not enabled, or a merge of the index failed
+     */
+    List<String> predictEndingWith(String suffix, int n) {
+        return substringIndex().endingWith(suffix, n);
+    }
+
+    private SubstringIndex substringIndex() {
+        if (substrings() == null)
+            throw new IllegalStateException("The substring index is not enabled - see enableSubstringIndex()");
+        return substrings();
+    }
+
+    /**
+     * Puts a bounded cache in front of predict(prefix, n), replacing any cache enabled before. Inserting or removing
+     * a word through this tree invalidates the cached results for its prefixes, so results are never out of date -
+     * as long as the tree is only changed through this node (not through a sub-tree returned by findPrefix).
+     *
+     * @param capacity the greatest number of results to cache (the least recently used are evicted first)
+     * @return the cache, which counts its hits and misses
+     */
+    PredictionCache enablePredictionCache(int capacity) {
+        return attachments().cache = new PredictionCache(capacity);
+    }
+
+    /**
+     * Removes the cache enabled by enablePredictionCache(), if any.
+     */
+    void disablePredictionCache() {
+        if (attachments != null)
+            attachments.cache = null;
+    }
+
+    /**
+     * Starts recording the latency of every insert, remove and prediction made through this tree (and the number of
+     * nodes each prediction visits) in new metrics, which also report the size of this tree.
+     *
+     * @return the metrics
+     */
+    DictionaryMetrics enableMetrics() {
+        DictionaryMetrics metrics = new DictionaryMetrics();
+        metrics.track(() -> this);
+        return enableMetrics(metrics);
+    }
+
+    /**
+     * As enableMetrics(), recording into the given metrics - which may be shared with other trees.
+     *
+     * @return the metrics
+     */
+    DictionaryMetrics enableMetrics(DictionaryMetrics metrics) {
+        return attachments().metrics = metrics;
+    }
+
+    /**
+     * Stops recording metrics, if they were enabled.
+     */
+    void disableMetrics() {
+        if (attachments != null)
+            attachments.metrics = null;
+    }
+
+    /**
+     * Estimates the heap retained by this tree: its nodes, their arrays of children and the words they hold. The
+     * sizes assume a 64-bit JVM with compressed references, and words of Latin-1 characters. Every node is visited,
+     * so this takes time in proportion to the size of the tree.
+     *
+     * @return the estimated number of bytes
+     */
+    long estimatedHeapBytes() {
+        long bytes = 0;
+        ArrayDeque<DictionaryTree> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            DictionaryTree node = stack.pop();
+            bytes += NODE_BYTES;
+            // Leaves share the same empty arrays.
+            if (node.kids.length > 0) {
+                bytes += align(ARRAY_HEADER_BYTES + 2L * node.keys.length);
+                bytes += align(ARRAY_HEADER_BYTES + 4L * node.kids.length);
+            }
+            if (node.word != null)
+                bytes += STRING_BYTES + align(ARRAY_HEADER_BYTES + node.word.length());
+            for (DictionaryTree child : node.kids)
+                stack.push(child);
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximates estimatedHeapBytes() from the statistics every node keeps, in constant time and without visiting
+     * any other node, so that it can be read by a monitoring thread while the tree is in use (the counts it reads may
+     * be a moment out of date while the tree changes). The arrays of children are counted from the number of nodes
+     * which have children and the number of children in all, and every word is assumed to have ASSUMED_WORD_CHARS
+     * characters.
+     *
+     * @return the approximate number of bytes
+     */
+    long approximateHeapBytes() {
+        long parents = nodeCount - leafCount;
+        long children = nodeCount - 1;
+        // Each array of children is a char[] and a reference array, with 4 bytes of padding on average.
+        long arrays = parents * 2 * (ARRAY_HEADER_BYTES + 4) + children * (2 + 4);
+        return nodeCount * NODE_BYTES + arrays
+                + wordCount * (STRING_BYTES + align(ARRAY_HEADER_BYTES + ASSUMED_WORD_CHARS));
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Finds the (at most) n most popular words in this tree with a best-first search. Each node knows the greatest
+     * popularity in its sub-tree, so the search always expands the most promising node next and can stop as soon as
+     * n words have been taken off the queue - the rest of the tree is never visited.
+     * Words with equal popularity are returned in the same order as allWords(), and words without a popularity are
+     * returned last.
+     *
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words in this tree, most popular first
+     */
+    List<String> mostPopular(int n) {
+        return mostPopular(n, null);
+    }
+
+    /**
+     * As mostPopular(n), counting the nodes visited in the given sample (if not null).
+     */
+    private List<String> mostPopular(int n, DictionaryMetrics.Sample sample) {
+        PriorityQueue<Candidate<DictionaryTree>> queue = new PriorityQueue<>();
+        queue.add(new Candidate<>(this, null, 0, bestPopularity, false));
+        return takeMostPopular(queue, n, false, node -> node.word, sample);
+    }
+
+    /**
+     * As mostPopular(n), but returns each word together with its popularity.
+     */
+    List<Word> mostPopularWords(int n) {
+        PriorityQueue<Candidate<DictionaryTree>> queue = new PriorityQueue<>();
+        queue.add(new Candidate<>(this, null, 0, bestPopularity, false));
+        return takeMostPopular(queue, n, false, DictionaryTree::toWord, null);
+    }
+
+    /**
+     * As predict(prefix, n), but returns each word together with its popularity, so that results from several trees
+     * can be merged (see ShardedDictionary). An empty prefix predicts from the whole tree. The prediction cache is
+     * not used.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words with the prefix, most popular first
+     */
+    List<Word> predictWords(String prefix, int n) {
+        return findPrefix(prefix).map(node -> node.mostPopularWords(n)).orElseGet(ArrayList::new);
+    }
+
+    /**
+     * Runs the best-first search of mostPopular(n) from the sub-trees already in the queue, which may be several
+     * (as for predictFuzzy). A sub-tree's children and word are given the same edit distance as the sub-tree.
+     *
+     * @param queue the sub-trees to search
+     * @param n the number of words to be returned
+     * @param distinct true if the sub-trees in the queue can overlap, so the same word may be found more than once
+     * @param result gives the value returned for the node of each word found
+     * @param sample counts the nodes visited, if metrics are enabled (otherwise null)
+     * @return the (at most) n best words in the sub-trees
+     */
+    private static <T> List<T> takeMostPopular(PriorityQueue<Candidate<DictionaryTree>> queue, int n,
+                                               boolean distinct, Function<DictionaryTree, T> result,
+                                               DictionaryMetrics.Sample sample) {
+        ArrayList<T> returnlist = new ArrayList<>();
+        Set<String> found = distinct ? new HashSet<>() : null;
+
+        while (returnlist.size() < n && !queue.isEmpty()) {
+            Candidate<DictionaryTree> next = queue.poll();
+            if (next.isWord) {
+                // No node left in the queue can hold a better word than this one.
+                if (found == null || found.add(next.node.word))
+                    returnlist.add(result.apply(next.node));
+                continue;
+            }
+            DictionaryTree node = next.node;
+            if (sample != null)
+                sample.nodesVisited++;
+            if (node.word != null)
+                queue.add(new Candidate<>(node, next, -1, node.ranking(), true, next.distance));
+            for (int index = 0 ; index < node.kids.length ; index++) {
+                DictionaryTree child = node.kids[index];
+                queue.add(new Candidate<>(child, next, index, child.bestPopularity, false, next.distance));
+            }
+        }
+        return returnlist;
+    }
+
+    /**
+     * Predicts the (at most) n best words whose start is within maxEdits edits (insertions, deletions or
+     * substitutions of one character) of the given prefix - so a mistyped prefix still finds words. Words are ranked
+     * by the fewest edits needed, then by popularity.
+     *
+     * The tree is searched together with the rows of the edit distance table between the prefix and the path to each
+     * node, and a branch is abandoned as soon as every entry in its row is more than maxEdits (no word below it can
+     * then match). Each node whose path is within maxEdits of the whole prefix starts a best-first search of its
+     * sub-tree, as in predict(prefix, n).
+     *
+     * @param prefix the (possibly mistyped) prefix of the words found
+     * @param maxEdits the greatest number of edits allowed
+     * @param n the number of words to be returned
+     * @return the (at most) n best words, closest and then most popular first
+     */
+    List<String> predictFuzzy(String prefix, int maxEdits, int n) {
+        PriorityQueue<Candidate<DictionaryTree>> queue = new PriorityQueue<>();
+        // The distance from each start of the prefix to the empty path of the root.
+        int[] row = new int[prefix.length() + 1];
+        for (int j = 0 ; j <= prefix.length() ; j++)
+            row[j] = j;
+        Candidate<DictionaryTree> start = new Candidate<>(this, null, 0, bestPopularity, false, prefix.length());
+        if (prefix.length() <= maxEdits)
+            queue.add(start);
+        findFuzzyMatches(start, prefix, row, maxEdits, prefix.length() <= maxEdits ? prefix.length() : maxEdits + 1,
+                queue);
+        return takeMostPopular(queue, n, true, node -> node.word, null);
+    }
+
+    /**
+     * Helper method for predictFuzzy() - searches the children of a node for the sub-trees which match the prefix.
+     *
+     * @param at the node whose children are searched
+     * @param prefix the prefix being matched
+     * @param row the edit distances between each start of the prefix and the path to the node
+     * @param maxEdits the greatest number of edits allowed
+     * @param matched the distance at which an ancestor (or the node itself) has already matched, or more than maxEdits
+     * @param queue the queue to add the matching sub-trees to
+     */
+    private void findFuzzyMatches(Candidate<DictionaryTree> at, String prefix, int[] row, int maxEdits, int matched,
+                                  PriorityQueue<Candidate<DictionaryTree>> queue) {
+        int m = prefix.length();
+        for (int index = 0 ; index < kids.length ; index++) {
+            char branchChar = keys[index];
+            DictionaryTree child = kids[index];
+            int[] next = new int[m + 1];
+            next[0] = row[0] + 1;
+            int closest = next[0];
+            for (int j = 1 ; j <= m ; j++) {
+                int substitution = row[j - 1] + (prefix.charAt(j - 1) == branchChar ? 0 : 1);
+                next[j] = Math.min(substitution, Math.min(row[j], next[j - 1]) + 1);
+                closest = Math.min(closest, next[j]);
+            }
+
+            Candidate<DictionaryTree> candidate =
+                    new Candidate<>(child, at, index, child.bestPopularity, false, next[m]);
+            int childMatched = matched;
+            if (next[m] < matched) {
+                // The whole prefix matches the path to this child more closely than any ancestor matched.
+                queue.add(candidate);
+                childMatched = next[m];
+            }
+            // Only search further if some word below could match with fewer edits than already found.
+            if (closest < childMatched && closest <= maxEdits)
+                child.findFuzzyMatches(candidate, prefix, next, maxEdits, childMatched, queue);
+        }
+    }
+
+    /**
+     * Finds the (at most) limit most popular words which match a wildcard pattern, such as "h?ll*", "*ing" or
+     * "[bc]at" (see WildcardPattern for the syntax), in the same order as predict(prefix, n).
+     *
+     * The pattern is compiled to an automaton which is stepped along each branch of the tree as the branch is
+     * followed, so only branches which can still lead to a match are visited: a branch is pruned as soon as the
+     * automaton has no states left, or when the pattern needs more characters than the branch is deep, and a literal
+     * character in the pattern goes straight to its child. The search is best-first on the best popularity of each
+     * branch, as in mostPopular(n), so it stops once limit words are found. Once every continuation of a branch
+     * matches (e.g. after "abc" for "ab*"), its sub-tree is searched without the automaton.
+     *
+     * @param pattern the pattern the words must match as a whole
+     * @param limit the number of words to be returned
+     * @return the (at most) limit most popular matching words, most popular first
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    List<String> match(String pattern, int limit) {
+        WildcardPattern compiled = WildcardPattern.compile(pattern);
+        PriorityQueue<Candidate<DictionaryTree>> queue = new PriorityQueue<>();
+        long[] start = compiled.matchesEveryContinuation(compiled.start()) ? null : compiled.start();
+        queue.add(new Candidate<>(this, null, 0, bestPopularity, false, 0, start));
+        List<String> matches = new ArrayList<>();
+        while (matches.size() < limit && !queue.isEmpty()) {
+            Candidate<DictionaryTree> next = queue.poll();
+            if (next.isWord) {
+                matches.add(next.node.word);
+                continue;
+            }
+            DictionaryTree node = next.node;
+            long[] states = next.states;
+            if (node.word != null && (states == null || compiled.matches(states)))
+                queue.add(new Candidate<>(node, next, -1, node.ranking(), true));
+            int only = states == null ? -1 : compiled.onlyNext(states);
+            if (only >= 0) {
+                int index = node.indexOf((char) only);
+                if (index >= 0)
+                    node.offerMatch(compiled, next, index, queue);
+            } else {
+                for (int index = 0 ; index < node.kids.length ; index++)
+                    node.offerMatch(compiled, next, index, queue);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Helper method for match() - adds a child to the queue, unless no word below it can match.
+     */
+    private void offerMatch(WildcardPattern pattern, Candidate<DictionaryTree> at, int index,
+                            PriorityQueue<Candidate<DictionaryTree>> queue) {
+        DictionaryTree child = kids[index];
+        long[] states = at.states == null ? null : pattern.stepInto(at.states, keys[index], child.height);
+        if (at.states != null && states == null)
+            return;
+        if (states != null && pattern.matchesEveryContinuation(states))
+            states = null;
+        queue.add(new Candidate<>(child, at, index, child.bestPopularity, false, 0, states));
+    }
+
+    /**
+     * Streams the words which match a wildcard pattern (see match) in alphabetical order. The tree is searched
+     * depth-first as the stream is consumed, pruned in the same way as match, so a stream which is limited or
+     * short-circuited (e.g. by findFirst) stops searching as soon as it has what it needs. The tree must not be
+     * changed while the stream is used.
+     *
+     * @param pattern the pattern the words must match as a whole
+     * @return the matching words, in alphabetical order
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    Stream<String> streamMatches(String pattern) {
+        MatchIterator matches = new MatchIterator(this, WildcardPattern.compile(pattern));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(matches,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Finds the (at most) limit alphabetically first words which match a wildcard pattern (see match).
+     *
+     * @param pattern the pattern the words must match as a whole
+     * @param limit the number of words to be returned
+     * @return the (at most) limit first matching words, in alphabetical order
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    List<String> matchAlphabetically(String pattern, int limit) {
+        return streamMatches(pattern).limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * The depth-first search of streamMatches - a stack of the nodes on the current path, with the automaton states
+     * at each (null once every word below matches) and the position of the next child to visit.
+     */
+    private static final class MatchIterator implements Iterator<String> {
+        private final WildcardPattern pattern;
+        private DictionaryTree[] nodes = new DictionaryTree[16];
+        private long[][] states = new long[16][];
+        private int[] positions = new int[16];
+        private int depth;
+        // The next word to return, once found.
+        private String next;
+
+        MatchIterator(DictionaryTree root, WildcardPattern pattern) {
+            this.pattern = pattern;
+            push(root, pattern.matchesEveryContinuation(pattern.start()) ? null : pattern.start());
+        }
+
+        private void push(DictionaryTree node, long[] nodeStates) {
+            if (depth == nodes.length) {
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                states = Arrays.copyOf(states, depth * 2);
+                positions = Arrays.copyOf(positions, depth * 2);
+            }
+            nodes[depth] = node;
+            states[depth] = nodeStates;
+            positions[depth] = 0;
+            depth++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && depth > 0) {
+                int top = depth - 1;
+                DictionaryTree node = nodes[top];
+                long[] nodeStates = states[top];
+                int index = positions[top];
+                int only = nodeStates == null ? -1 : pattern.onlyNext(nodeStates);
+                if (only >= 0) {
+                    // Only one child can match, and it is visited once.
+                    index = index == 0 ? node.indexOf((char) only) : -1;
+                    positions[top] = node.kids.length;
+                } else {
+                    positions[top] = index + 1;
+                }
+                if (index < 0 || index >= node.kids.length) {
+                    if (positions[top] >= node.kids.length) {
+                        depth--;
+                        nodes[depth] = null;
+                        states[depth] = null;
+                    }
+                    continue;
+                }
+                DictionaryTree child = node.kids[index];
+                long[] childStates = null;
+                if (nodeStates != null) {
+                    childStates = pattern.stepInto(nodeStates, node.keys[index], child.height);
+                    if (childStates == null)
+                        continue;
+                    if (pattern.matchesEveryContinuation(childStates))
+                        childStates = null;
+                }
+                // A word comes before the longer words below it.
+                if (child.word != null && (childStates == null || pattern.matches(childStates)))
+                    next = child.word;
+                push(child, childStates);
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            String word = next;
+            next = null;
+            return word;
+        }
+    }
+
+    /**
+     * Recalculates the best and worst popularities and statistics of this node from its own word and its children,
+     * used on the path of a removed word (inserting can only ever widen the values, so they are updated on the way
+     * instead).
+     */
+    private void recomputeStatistics() {
+        int best = ranking();
+        int worst = word != null ? ranking() : NO_WORDS;
+        nodeCount = 1;
+        wordCount = word != null ? 1 : 0;
+        leafCount = isLeaf() ? 1 : 0;
+        height = 0;
+        maxBranching = kids.length;
+        for (DictionaryTree child : kids) {
+            best = Math.max(best, child.bestPopularity);
+            worst = Math.min(worst, child.worstPopularity);
+            nodeCount += child.nodeCount;
+            wordCount += child.wordCount;
+            leafCount += child.leafCount;
+            height = Math.max(height, child.height + 1);
+            maxBranching = Math.max(maxBranching, child.maxBranching);
+        }
+        bestPopularity = best;
+        worstPopularity = worst;
+    }
+
+    /**
+     * Starts a PredictionSession on this tree, which predicts words as a prefix is typed one character at a time.
+     *
+     * @return a new session with an empty prefix
+     */
+    PredictionSession startSession() {
+        return new PredictionSession(this);
+    }
+
+    /**
+     * Finds the child of this node which branches on the given character, without any allocation (unlike
+     * findPrefix, which is used with whole prefixes).
+     *
+     * @param branchChar the character to branch on
+     * @return the child tree, or null if this node has no such child
+     */
+    DictionaryTree child(char branchChar) {
+        int at = indexOf(branchChar);
+        return at >= 0 ? kids[at] : null;
+    }
+
+    /**
+     * Method to traverse the tree and return the location of the specified prefix - which can then be used for other
+     * purposes.
+     *
+     * @param prefix The prefix which we want to find.
+     * @return The DictionaryTree (node) in the tree which holds the prefix - this node itself for an empty prefix.
+     */
+    Optional<DictionaryTree> findPrefix(String prefix) {
+        DictionaryTree current = this;
+        for (int i = 0 ; i < prefix.length() ; i++) {
+            current = current.child(prefix.charAt(i));
+            if (current == null)
+                return Optional.empty();
+        }
+        return Optional.of(current);
+    }
+
+    /**
+     *
+     * @return the number of leaves in this tree, i.e. the number of words which are
+     * not prefixes of any other word.
+     */
+    int numLeaves() {
+        /*
+        int num = 0;
+        if (isLeaf()) {
+            return 1;
+        } else {
+            for (DictionaryTree child : kids) {
+                num += child.numLeaves();
+            }
+        }
+        return num;
+        */
+
+        return leafCount;
+    }
+
+    /**
+     * Finds the maximum number of children that any node has.
+     *
+     * @return the maximum number of children held by any node in this tree
+     */
+    int maximumBranching() {
+        /*
+        if (isLeaf())
+            return 0;
+        int max = kids.length;
+        for (DictionaryTree child : kids) {
+            // Finds the branching factor for every node in the tree - recursively.
+            int numBranches = child.maximumBranching();
+            // If a nodes branching factor is greater than the current max, set it to the current max.
+            if (max < numBranches) {
+                // Set the size of this new maximum branching factor.
+                max = numBranches;
+            }
+        }
+        return max;
+        */
+
+        return maxBranching;
+    }
+
+    /**
+     * Finds the height of the tree.
+     *
+     * @return the height of this tree, i.e. the length of the longest branch
+     */
+    int height() {
+        /*
+        int h = 0;
+        if (isLeaf())
+            return -1;
+
+        for (DictionaryTree child : kids) {
+            h = Math.max(h, child.height());
+        }
+        return h + 1;
+        */
+
+        return height;
+    }
+
+    /**
+     * Method to find the longest word in the tree.
+     *
+     * @return the longest word in the tree
+     */
+    String longestWord() {
+        // Follow the (first) child whose sub-tree is as tall as possible, which leads to the deepest leaf.
+        StringBuilder largest = new StringBuilder();
+        DictionaryTree node = this;
+        while (!node.isLeaf()) {
+            for (int i = 0 ; i < node.kids.length ; i++) {
+                if (node.kids[i].height == node.height - 1) {
+                    largest.append(node.keys[i]);
+                    node = node.kids[i];
+                    break;
+                }
+            }
+        }
+        return largest.toString();
+    }
+
+    /**
+     * @return the number of nodes in this tree
+     */
+
+    int size() {
+        /*
+        int s = 1;
+        for (DictionaryTree child : kids) {
+            s += child.size();
+        }
+        return s;
+        */
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of words stored in this tree
+     */
+    int numWords() {
+        return wordCount;
+    }
+
+    /**
+     * @return all words stored in this tree as a list
+     */
+    List<String> allWords() {
+        return allWords(new ArrayList<>());
+    }
+
+    /**
+     * Helper method for the allWords() method - adds the words of this tree to the given list, in alphabetical order.
+     * The tree is walked without recursion, so that very long words cannot overflow the stack.
+     *
+     * @param all
+     * @return The List containing all words.
+     */
+    List<String> allWords(List<String> all) {
+        new WordSpliterator<>(this, node -> node.word).forEachRemaining(all::add);
+        return all;
+    }
+
+    /**
+     * Method to return all of the words in a tree as a Word object - this contains the word, and the popularity
+     * of that word.
+     *
+     * @param all
+     * @return The List containing all of the Word objects.
+     */
+    List<Word> allWordObjs(List<Word> all) {
+        spliterator().forEachRemaining(all::add);
+        return all;
+    }
+
+    /**
+     * @return the word at this node as a Word object (this node must hold a word)
+     */
+    private Word toWord() {
+        return new Word(word, hasPopularity ? Optional.of(popularity) : Optional.empty());
+    }
+
+    /**
+     * @return an iterator over the words of this tree in alphabetical order, which walks the tree as it goes rather
+     * than collecting the words first
+     */
+    @Override
+    public Iterator<Word> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * @return a spliterator over the words of this tree in alphabetical order, which splits between the children of
+     * a node, so that a parallel stream shares the sub-trees out between threads
+     */
+    @Override
+    public Spliterator<Word> spliterator() {
+        return new WordSpliterator<>(this, DictionaryTree::toWord);
+    }
+
+    /**
+     * @return a lazy stream of the words of this tree in alphabetical order
+     */
+    Stream<Word> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @param prefix the prefix of the words to stream
+     * @return a lazy stream of the words starting with the prefix in alphabetical order (empty if there are none)
+     */
+    Stream<Word> stream(String prefix) {
+        return findPrefix(prefix).map(DictionaryTree::stream).orElseGet(Stream::empty);
+    }
+
+    /**
+     * @return a lazy parallel stream of the words of this tree
+     */
+    Stream<Word> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Folds the tree using the given function. Each of this node's children is folded with the same function,
+     * and these results are stored in a collection, cResults, say, then the final result is calculated
+     * using f.apply(this, cResults).
+     *
+     * The children are folded in alphabetical order, using a stack of the nodes being folded rather than recursion,
+     * so that very long words cannot overflow the call stack.
+     *
+     * @param f   the summarising function, which is passed the result of invoking the given function
+     * @param <A> the type of the folded value
+     * @return the result of folding the tree using f
+     */
+    <A> A fold(BiFunction<DictionaryTree, Collection<A>, A> f) {
+        // The path from this node to the node being folded, with the next child of each to fold and the results of
+        // the children already folded.
+        DictionaryTree[] nodes = new DictionaryTree[Math.max(height, 0) + 1];
+        int[] next = new int[nodes.length];
+        List<ArrayList<A>> results = new ArrayList<>();
+        nodes[0] = this;
+        results.add(new ArrayList<>());
+        int depth = 0;
+        while (true) {
+            DictionaryTree node = nodes[depth];
+            if (next[depth] < node.kids.length) {
+                // The height may not be up to date yet when this is called by Builder.build().
+                if (depth + 1 == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    next = Arrays.copyOf(next, next.length * 2);
+                }
+                nodes[depth + 1] = node.kids[next[depth]++];
+                next[depth + 1] = 0;
+                depth++;
+                if (results.size() == depth)
+                    results.add(null);
+                results.set(depth, new ArrayList<>());
+                continue;
+            }
+            A result = f.apply(node, results.get(depth));
+            if (depth == 0)
+                return result;
+            depth--;
+            results.get(depth).add(result);
+        }
+    }
+
+    /**
+     * Folds the tree in the same way as fold(), with the same result, but folds large sub-trees in parallel on the
+     * common ForkJoinPool. f may be called from several threads at once, so it must not depend on the order in which
+     * sub-trees are folded (the children of each node are still passed in alphabetical order).
+     *
+     * Unlike fold(), the collection passed to f is a view which is reused once f returns, so f must not keep it.
+     *
+     * @param f   the summarising function
+     * @param <A> the type of the folded value
+     * @return the result of folding the tree using f
+     */
+    <A> A parallelFold(BiFunction<DictionaryTree, Collection<A>, A> f) {
+        return parallelFold(f, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * As parallelFold(f), running the fold on the given pool.
+     */
+    <A> A parallelFold(BiFunction<DictionaryTree, Collection<A>, A> f, ForkJoinPool pool) {
+        return pool.invoke(new FoldTask<>(this, f));
+    }
+
+    /**
+     * Helper method for parallelFold() - folds this tree in the current thread. The results of the children are kept
+     * on one list for the whole fold, and each node is passed a view of its children's results at the end of it (which
+     * are then replaced by the node's own result), rather than a new collection per node.
+     */
+    private <A> A foldSequentially(BiFunction<DictionaryTree, Collection<A>, A> f) {
+        DictionaryTree[] nodes = new DictionaryTree[Math.max(height, 0) + 1];
+        int[] next = new int[nodes.length];
+        // first[d] is the position in results of the first result of nodes[d]'s children.
+        int[] first = new int[nodes.length];
+        ArrayList<A> results = new ArrayList<>();
+        nodes[0] = this;
+        int depth = 0;
+        while (true) {
+            DictionaryTree node = nodes[depth];
+            if (next[depth] < node.kids.length) {
+                nodes[depth + 1] = node.kids[next[depth]++];
+                next[depth + 1] = 0;
+                first[depth + 1] = results.size();
+                depth++;
+                continue;
+            }
+            List<A> children = results.subList(first[depth], results.size());
+            A result = f.apply(node, children);
+            children.clear();
+            if (depth == 0)
+                return result;
+            results.add(result);
+            depth--;
+        }
+    }
+
+    /**
+     * A fold of one sub-tree for parallelFold(). Children larger than PARALLEL_FOLD_THRESHOLD are forked as tasks of
+     * their own, and the rest are folded by this task while they run.
+     */
+    private static final class FoldTask<A> extends RecursiveTask<A> {
+        // Tasks are never serialized, but ForkJoinTask is Serializable.
+        private static final long serialVersionUID = 1L;
+        private final transient DictionaryTree node;
+        private final transient BiFunction<DictionaryTree, Collection<A>, A> f;
+
+        FoldTask(DictionaryTree node, BiFunction<DictionaryTree, Collection<A>, A> f) {
+            this.node = node;
+            this.f = f;
+        }
+
+        @Override
+        protected A compute() {
+            if (node.nodeCount <= PARALLEL_FOLD_THRESHOLD)
+                return node.foldSequentially(f);
+
+            DictionaryTree[] kids = node.kids;
+            List<FoldTask<A>> forked = new ArrayList<>(Collections.nCopies(kids.length, null));
+            for (int i = 0 ; i < kids.length ; i++) {
+                if (kids[i].nodeCount > PARALLEL_FOLD_THRESHOLD) {
+                    FoldTask<A> task = new FoldTask<>(kids[i], f);
+                    task.fork();
+                    forked.set(i, task);
+                }
+            }
+            List<A> results = new ArrayList<>(Collections.nCopies(kids.length, null));
+            for (int i = 0 ; i < kids.length ; i++) {
+                if (forked.get(i) == null)
+                    results.set(i, kids[i].foldSequentially(f));
+            }
+            // Join in the reverse order of forking, so that tasks no other thread has taken are run here.
+            for (int i = kids.length - 1 ; i >= 0 ; i--) {
+                if (forked.get(i) != null)
+                    results.set(i, forked.get(i).join());
+            }
+            return f.apply(node, results);
+        }
+    }
+
+    /**
+     * Walks the words of a tree in alphabetical order (each node's own word, then the words of its children in order
+     * of their characters) using a stack of the nodes on the path to the current node, so the words are produced one
+     * at a time and nothing is collected in advance.
+     *
+     * Splitting hands the first half of the children left at the bottom of the stack (along with everything before
+     * them) to the new spliterator, and keeps the rest. When a single child is left, the walk moves down into it, so
+     * a tree whose words share a long prefix still splits.
+     *
+     * @param <T> the type produced for each node holding a word
+     */
+    private static final class WordSpliterator<T> implements Spliterator<T> {
+        private final Function<DictionaryTree, T> mapper;
+        // The path to the current node. next[d] is the next child of nodes[d] to walk, or -1 if its word is still to
+        // be produced. The children of nodes[0] are only walked up to (not including) end - nodes[d] for d > 0 are
+        // always walked to their last child.
+        private DictionaryTree[] nodes;
+        private int[] next;
+        private int depth;
+        private int end;
+
+        WordSpliterator(DictionaryTree root, Function<DictionaryTree, T> mapper) {
+            this.mapper = mapper;
+            this.nodes = new DictionaryTree[Math.max(root.height, 0) + 1];
+            this.next = new int[nodes.length];
+            this.nodes[0] = root;
+            this.next[0] = -1;
+            this.end = root.kids.length;
+        }
+
+        private WordSpliterator(WordSpliterator<T> other) {
+            this.mapper = other.mapper;
+            this.nodes = other.nodes.clone();
+            this.next = other.next.clone();
+            this.depth = other.depth;
+            this.end = other.end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (depth >= 0) {
+                DictionaryTree node = nodes[depth];
+                if (next[depth] < 0) {
+                    next[depth] = 0;
+                    if (node.word != null) {
+                        action.accept(mapper.apply(node));
+                        return true;
+                    }
+                } else if (next[depth] < (depth == 0 ? end : node.kids.length)) {
+                    nodes[depth + 1] = node.kids[next[depth]++];
+                    next[depth + 1] = -1;
+                    depth++;
+                } else {
+                    nodes[depth--] = null;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (depth < 0)
+                return null;
+            // Drop the bottom of the stack while nothing is left there but the child being walked.
+            while (depth > 0 && next[0] == end) {
+                System.arraycopy(nodes, 1, nodes, 0, depth);
+                System.arraycopy(next, 1, next, 0, depth);
+                nodes[depth--] = null;
+                end = nodes[0].kids.length;
+            }
+            // Move down while the walk is only one (unstarted) child.
+            while (depth == 0 && next[0] >= 0 && end - next[0] == 1) {
+                nodes[0] = nodes[0].kids[next[0]];
+                next[0] = -1;
+                end = nodes[0].kids.length;
+            }
+            int from = Math.max(next[0], 0);
+            if (end - from < 2)
+                return null;
+            int middle = (from + end) >>> 1;
+            WordSpliterator<T> prefix = new WordSpliterator<>(this);
+            prefix.end = middle;
+            // This spliterator keeps only the children of the bottom node from middle onwards.
+            Arrays.fill(nodes, 1, depth + 1, null);
+            depth = 0;
+            next[0] = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // The count is exact - the words left are the pending words on the path, and every word of the children
+            // still to be walked.
+            long size = 0;
+            for (int d = 0 ; d <= depth ; d++) {
+                DictionaryTree node = nodes[d];
+                if (next[d] < 0 && node.word != null)
+                    size++;
+                int last = d == 0 ? end : node.kids.length;
+                for (int i = Math.max(next[d], 0) ; i < last ; i++)
+                    size += node.kids[i].wordCount;
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+    }
+
+    /**
+     * Copies this node and every node on the path of the given word (as far as it exists in the tree). Every other
+     * sub-tree is shared with the original, so inserting or removing the word in the copy leaves the original
+     * unchanged - this is how ConcurrentDictionaryTree creates each new version of its tree.
+     *
+     * @param word the word which is about to be inserted or removed
+     * @return the copy of this node
+     */
+    DictionaryTree copyPath(String word) {
+        DictionaryTree copy = new DictionaryTree(this);
+        DictionaryTree node = copy;
+        for (int i = 0 ; i < word.length() ; i++) {
+            char branchChar = word.charAt(i);
+            int at = node.indexOf(branchChar);
+            if (at < 0)
+                break;
+            // The copy constructor cloned the array of children, so replacing one leaves the original unchanged.
+            DictionaryTree childCopy = new DictionaryTree(node.kids[at]);
+            node.kids[at] = childCopy;
+            node = childCopy;
+        }
+        return copy;
+    }
+
+    /**
+     * Compiles this tree into a read-only FrozenDictionary, which holds the same words and popularities in a few
+     * primitive arrays instead of a node object per character. Later changes to this tree are not reflected in it.
+     *
+     * @return a frozen copy of this tree
+     */
+    FrozenDictionary freeze() {
+        FrozenDictionary.Builder builder = new FrozenDictionary.Builder(size());
+        freeze(builder, '\0');
+        return builder.build();
+    }
+
+    /**
+     * Saves a frozen copy of this tree to the given file, which FrozenDictionary.map() can open again (and, with
+     * map(file, false), almost instantly whatever the size of the tree). The file is replaced atomically.
+     *
+     * @param file the file to write, which is replaced if it exists
+     * @throws IOException if there was a problem writing the file
+     */
+    void save(Path file) throws IOException {
+        freeze().save(file);
+    }
+
+    /**
+     * Helper method for freeze() - adds this node and then its sub-trees to the builder, in depth-first order.
+     *
+     * @param builder the builder collecting the nodes
+     * @param label the character branched on to reach this node
+     */
+    private void freeze(FrozenDictionary.Builder builder, char label) {
+        int node = builder.open(label, word != null, ranking(), bestPopularity, kids.length);
+        for (int i = 0 ; i < kids.length ; i++) {
+            kids[i].freeze(builder, keys[i]);
+        }
+        builder.close(node);
+    }
+
+    /**
+     * Checks if the DictionaryTree is a leaf
+     *
+     * @return true/false
+     */
+    boolean isLeaf(){
+        return kids.length == 0;
+    }
+
+    /**
+     * Helper method for Builder.build() - recalculates the statistics of every node in this tree, children first.
+     */
+    private void recomputeAllStatistics() {
+        // fold() visits children before their parent, without recursion.
+        fold((DictionaryTree node, Collection<Void> children) -> {
+            node.recomputeStatistics();
+            return null;
+        });
+    }
+
+    /**
+     * Builds a tree from a sequence of words much faster than insert(word, popularity), for loading a whole word list.
+     * Each word starts from the node at the end of the prefix it shares with the previous word, rather than from the
+     * root, so sorted input only creates the nodes which are new. Statistics are calculated once, by build(), rather
+     * than on every insert. As with insert(word, popularity), the first popularity given for a word is kept.
+     */
+    static final class Builder {
+        private final DictionaryTree root = new DictionaryTree();
+        // The nodes on the path of the previous word (path[0] is the root), and the characters of that word.
+        private DictionaryTree[] path = new DictionaryTree[32];
+        private char[] previous = new char[32];
+        private int previousLength;
+
+        Builder() {
+            path[0] = root;
+        }
+
+        /**
+         * Adds the word held in text[start, end) with the given popularity, if it is not already in the tree.
+         */
+        void add(char[] text, int start, int end, int popularity) {
+            int length = end - start;
+            if (length >= previous.length) {
+                previous = Arrays.copyOf(previous, length * 2);
+                path = Arrays.copyOf(path, length * 2 + 1);
+            }
+            // The nodes of the prefix shared with the previous word are already known.
+            int shared = 0;
+            while (shared < length && shared < previousLength && previous[shared] == text[start + shared])
+                shared++;
+
+            DictionaryTree node = path[shared];
+            for (int i = shared ; i < length ; i++) {
+                char branchChar = text[start + i];
+                DictionaryTree child = node.child(branchChar);
+                if (child == null) {
+                    child = new DictionaryTree();
+                    node.addChild(branchChar, child);
+                }
+                node = child;
+                path[i + 1] = child;
+                previous[i] = branchChar;
+            }
+            previousLength = length;
+
+            if (length > 0 && node.word == null)
+                node.setWord(new String(text, start, length), popularity, true);
+        }
+
+        /**
+         * @return the tree holding every word added, with its statistics calculated
+         */
+        DictionaryTree build() {
+            root.recomputeAllStatistics();
+            return root;
+        }
+    }
+
+    /**
+     * Joins trees built separately (for example in parallel) into one. Each tree must only hold words starting with
+     * a different character, so each contributes one child of the new root, in the order given.
+     *
+     * @param parts the trees to join
+     * @return a tree holding every word in the parts
+     */
+    static DictionaryTree join(List<DictionaryTree> parts) {
+        DictionaryTree root = new DictionaryTree();
+        for (DictionaryTree part : parts) {
+            for (int i = 0 ; i < part.kids.length ; i++)
+                root.addChild(part.keys[i], part.kids[i]);
+        }
+        root.recomputeStatistics();
+        return root;
+    }
+
+
+}
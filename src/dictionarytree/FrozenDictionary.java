@@ -0,0 +1,532 @@
+package dictionarytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only copy of a DictionaryTree, created by DictionaryTree.freeze(). Instead of a node object (with a hash map
+ * of children) per character, the whole tree is packed into a few primitive arrays, with the nodes stored in the
+ * order of a depth-first traversal. Node i is followed directly by its sub-tree, which ends just before end[i], so
+ * the first child of i is i + 1 and the next sibling of a child c is end[c]. This makes every sub-tree one contiguous
+ * block of the arrays, so listing the words under a prefix is a single scan through memory. To find a child without
+ * passing over its siblings, the labels of the children of every node are also kept together in sorted order (as the
+ * keys of a DictionaryTree are) and searched by binary search.
+ *
+ * A FrozenDictionary returned by findPrefix() is a view of the same arrays, rooted at the node of the prefix.
+ *
+ * The arrays are accessed through buffers, so a FrozenDictionary can also be saved to a file with save() and opened
+ * again with map(), which memory maps the file and answers queries straight from the mapped bytes. Every process
+ * which maps the same file shares one copy of it in the operating system's page cache. The file holds a header
+ * followed by the arrays, all little-endian:
+ *
+ *     offset  0: magic "DTRE", format version (int), number of nodes (int), reserved (int)
+ *     offset 16: CRC32 of everything after the header (long)
+ *     offset 24: words (long per 64 nodes), end, popularity and best (int per node), firstKid (int per node, and one
+ *                more), kids (int per node), labels and keys (char per node)
+ */
+public class FrozenDictionary {
+    // Ranking value given to words without a popularity, matching DictionaryTree.
+    private static final int UNRANKED = Integer.MIN_VALUE;
+
+    // Layout of the saved file.
+    private static final int MAGIC = 0x45525444; // "DTRE", read little-endian.
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+
+    // The character branched on to reach each node (unused for the root).
+    private final CharBuffer labels;
+    // The index just past the end of each node's sub-tree.
+    private final IntBuffer end;
+    // The popularity of the word at each node (UNRANKED if there is no word, or it has no popularity).
+    private final IntBuffer popularity;
+    // The greatest popularity of any word in each node's sub-tree.
+    private final IntBuffer best;
+    // One bit per node, set if a word ends at that node.
+    private final LongBuffer words;
+    // The children of every node, grouped by parent in node order: the children of node i are kids[firstKid[i]] up to
+    // kids[firstKid[i + 1] - 1], in the order of their labels, which are held alongside in keys.
+    private final IntBuffer firstKid;
+    private final IntBuffer kids;
+    private final CharBuffer keys;
+
+    // The node this dictionary is rooted at, and the prefix spelled out by the path to it.
+    private final int root;
+    private final String rootPrefix;
+
+    private FrozenDictionary(CharBuffer labels, IntBuffer end, IntBuffer popularity, IntBuffer best, LongBuffer words,
+                             IntBuffer firstKid, IntBuffer kids, CharBuffer keys, int root, String rootPrefix) {
+        this.labels = labels;
+        this.end = end;
+        this.popularity = popularity;
+        this.best = best;
+        this.words = words;
+        this.firstKid = firstKid;
+        this.kids = kids;
+        this.keys = keys;
+        this.root = root;
+        this.rootPrefix = rootPrefix;
+    }
+
+    /**
+     * Opens a dictionary saved by save(), checking its checksum first.
+     *
+     * @param file the file to open
+     * @return the dictionary held in the file
+     * @throws IOException if the file could not be read, or is not a saved dictionary (or fails the checksum)
+     */
+    static FrozenDictionary map(Path file) throws IOException {
+        return map(file, true);
+    }
+
+    /**
+     * Opens a dictionary saved by save(). The file is memory mapped, and nothing is copied onto the heap, so without
+     * verification only the pages actually used by queries are ever read. The header is always checked against the
+     * size of the file, so the sections never reach past its end, but only verification can tell that their contents
+     * are as they were saved - an unverified file which has been changed may give wrong answers or exceptions.
+     *
+     * @param file the file to open
+     * @param verify whether to check the checksum of the whole file (which means reading all of it) and that every
+     *               sub-tree lies inside the dictionary, before opening
+     * @return the dictionary held in the file
+     * @throws IOException if the file could not be read, or is not a saved dictionary (or fails verification)
+     */
+    static FrozenDictionary map(Path file, boolean verify) throws IOException {
+        ByteBuffer bytes;
+        int size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (length < HEADER_SIZE)
+                throw new IOException(file + " is not a saved dictionary");
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException(file + " was truncated while it was opened");
+            }
+            if (header.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a saved dictionary");
+            if (header.getInt(4) != VERSION)
+                throw new IOException(file + " has unsupported format version " + header.getInt(4));
+            size = header.getInt(8);
+            // Worked out in longs, so that no count in the header can overflow into a length which looks right.
+            if (size < 1 || length != HEADER_SIZE + payloadSize((long) size))
+                throw new IOException(file + " is truncated or corrupt (" + size + " nodes in " + length + " bytes)");
+            if (length > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large to be mapped (" + length + " bytes)");
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (verify) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes.slice(HEADER_SIZE, bytes.capacity() - HEADER_SIZE));
+            if (crc.getValue() != bytes.getLong(16))
+                throw new IOException(file + " failed its checksum");
+        }
+
+        int offset = HEADER_SIZE;
+        LongBuffer words = section(bytes, offset, wordsSize(size)).asLongBuffer();
+        IntBuffer end = section(bytes, offset += wordsSize(size), size * 4).asIntBuffer();
+        IntBuffer popularity = section(bytes, offset += size * 4, size * 4).asIntBuffer();
+        IntBuffer best = section(bytes, offset += size * 4, size * 4).asIntBuffer();
+        IntBuffer firstKid = section(bytes, offset += size * 4, (size + 1) * 4).asIntBuffer();
+        IntBuffer kids = section(bytes, offset += (size + 1) * 4, size * 4).asIntBuffer();
+        CharBuffer labels = section(bytes, offset += size * 4, size * 2).asCharBuffer();
+        CharBuffer keys = section(bytes, offset += size * 2, size * 2).asCharBuffer();
+        if (verify) {
+            // Every sub-tree must end after its own node and within the dictionary, so that every scan moves forward.
+            boolean nested = end.get(0) == size;
+            for (int i = 1 ; i < size && nested ; i++)
+                nested = end.get(i) > i && end.get(i) <= size;
+            if (!nested)
+                throw new IOException(file + " is corrupt (a sub-tree reaches outside the dictionary)");
+            // Every node but the root is a child, and every child lies inside the dictionary.
+            boolean grouped = firstKid.get(0) == 0 && firstKid.get(size) == size - 1;
+            for (int i = 0 ; i < size && grouped ; i++)
+                grouped = firstKid.get(i) <= firstKid.get(i + 1);
+            for (int k = 0 ; k < size - 1 && grouped ; k++)
+                grouped = kids.get(k) > 0 && kids.get(k) < size;
+            if (!grouped)
+                throw new IOException(file + " is corrupt (a child lies outside the dictionary)");
+        }
+        return new FrozenDictionary(labels, end, popularity, best, words, firstKid, kids, keys, 0, "");
+    }
+
+    /**
+     * Saves this dictionary (or, for a view from findPrefix(), the whole dictionary it is part of) to the given file,
+     * in the format read by map().
+     *
+     * @param file the file to write, which is replaced if it exists
+     * @throws IOException if there was a problem writing the file
+     */
+    void save(Path file) throws IOException {
+        int size = end.limit();
+        ByteBuffer payload = ByteBuffer.allocate(payloadSize(size)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0 ; i < words.limit() ; i++)
+            payload.putLong(words.get(i));
+        for (IntBuffer array : new IntBuffer[] {end, popularity, best, firstKid, kids}) {
+            for (int i = 0 ; i < array.limit() ; i++)
+                payload.putInt(array.get(i));
+        }
+        for (CharBuffer array : new CharBuffer[] {labels, keys}) {
+            for (int i = 0 ; i < size ; i++)
+                payload.putChar(array.get(i));
+        }
+        payload.rewind(); // Including the padding at the end.
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0).putLong(crc.getValue());
+        header.flip();
+
+        // Written to a file beside the target and then renamed over it, so that a reader (or a crash) never sees a
+        // half written dictionary, even one which mapped the old file and is still using it.
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining())
+                    channel.write(header);
+                while (payload.hasRemaining())
+                    channel.write(payload);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return the number of bytes after the header in a saved dictionary of the given number of nodes
+     */
+    private static int payloadSize(int size) {
+        return Math.toIntExact(payloadSize((long) size));
+    }
+
+    private static long payloadSize(long size) {
+        long bytes = ((size + 63) >>> 6) * 8 + size * 4 * 5 + 4 + size * 2 * 2;
+        return (bytes + 7) & ~7; // Padded to a whole number of longs.
+    }
+
+    private static int wordsSize(int size) {
+        return ((size + 63) >>> 6) * 8;
+    }
+
+    private static ByteBuffer section(ByteBuffer bytes, int offset, int length) {
+        return bytes.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Determines whether or not the specified word is in this dictionary.
+     *
+     * @param word the word whose presence will be checked
+     * @return true if the specified word is stored in this dictionary; false otherwise
+     */
+    boolean contains(String word) {
+        int node = find(word);
+        return node >= 0 && isWord(node);
+    }
+
+    /**
+     * Finds the sub-tree of the given prefix.
+     *
+     * @param prefix The prefix which we want to find.
+     * @return a view of this dictionary rooted at the node of the prefix, or an empty optional if there is no such node
+     */
+    Optional<FrozenDictionary> findPrefix(String prefix) {
+        int node = find(prefix);
+        if (node < 0)
+            return Optional.empty();
+        return Optional.of(new FrozenDictionary(labels, end, popularity, best, words, firstKid, kids, keys, node,
+                rootPrefix + prefix));
+    }
+
+    /**
+     * Predicts the most popular word with the given prefix, other than the prefix itself, in the same way as
+     * DictionaryTree.predict(prefix).
+     *
+     * @param prefix the prefix of the word returned
+     * @return a word that starts with the given prefix, or an empty optional if no such word is found.
+     */
+    Optional<String> predict(String prefix) {
+        for (String word : predict(prefix, 2)) {
+            if (!word.equals(rootPrefix + prefix))
+                return Optional.of(word);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Predicts the (at most) n most popular words with the specified prefix, in the same order as
+     * DictionaryTree.predict(prefix, n).
+     *
+     * @param prefix the prefix of the words found
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words with the specified prefix
+     */
+    List<String> predict(String prefix, int n) {
+        int node = find(prefix);
+        List<String> returnlist = new ArrayList<>();
+        if (node < 0)
+            return returnlist;
+        String nodePrefix = rootPrefix + prefix;
+
+        // Best-first search, as in DictionaryTree.mostPopular(n). Since nodes are numbered in depth-first order,
+        // ties are broken by the node index alone, so each queue entry fits in a single long.
+        LongHeap queue = new LongHeap();
+        queue.add(entry(best.get(node), node, false));
+        while (returnlist.size() < n && !queue.isEmpty()) {
+            long next = queue.poll();
+            int index = (int) (next >>> 1) & Integer.MAX_VALUE;
+            if ((next & 1) == 0) {
+                returnlist.add(wordAt(node, nodePrefix, index));
+                continue;
+            }
+            if (isWord(index))
+                queue.add(entry(popularity.get(index), index, true));
+            for (int child = index + 1 ; child < end.get(index) ; child = end.get(child))
+                queue.add(entry(best.get(child), child, false));
+        }
+        return returnlist;
+    }
+
+    /**
+     * @return all words stored in this dictionary as a list, in the same order as DictionaryTree.allWords()
+     */
+    List<String> allWords() {
+        List<String> all = new ArrayList<>();
+        StringBuilder current = new StringBuilder(rootPrefix);
+        // The end of each sub-tree on the path to the current node.
+        int[] path = new int[16];
+        int depth = 0;
+
+        for (int i = root ; i < end.get(root) ; i++) {
+            // Step back up out of every sub-tree that has been finished.
+            while (depth > 0 && i >= path[depth - 1]) {
+                depth--;
+                current.setLength(current.length() - 1);
+            }
+            if (i != root) {
+                if (depth == path.length)
+                    path = Arrays.copyOf(path, depth * 2);
+                path[depth++] = end.get(i);
+                current.append(labels.get(i));
+            }
+            if (isWord(i))
+                all.add(current.toString());
+        }
+        return all;
+    }
+
+    /**
+     * @return the number of nodes in this dictionary
+     */
+    int size() {
+        return end.get(root) - root;
+    }
+
+    /**
+     * Follows the given characters down from the root.
+     *
+     * @return the index of the node reached, or -1 if the path leaves the tree
+     */
+    private int find(String path) {
+        int node = root;
+        for (int i = 0 ; i < path.length() && node >= 0 ; i++)
+            node = child(node, path.charAt(i));
+        return node;
+    }
+
+    /**
+     * @return the index of the child of the node that branches on the given character, or -1 if there is none
+     */
+    private int child(int node, char branchChar) {
+        int low = firstKid.get(node);
+        int high = firstKid.get(node + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char key = keys.get(middle);
+            if (key < branchChar)
+                low = middle + 1;
+            else if (key > branchChar)
+                high = middle - 1;
+            else
+                return kids.get(middle);
+        }
+        return -1;
+    }
+
+    private boolean isWord(int node) {
+        return (words.get(node >>> 6) & (1L << node)) != 0;
+    }
+
+    /**
+     * Spells out the word at the given node, by walking down to it from an ancestor.
+     *
+     * @param from an ancestor of the node
+     * @param fromPrefix the prefix spelled out by the path to the ancestor
+     * @param node the node holding the word
+     */
+    private String wordAt(int from, String fromPrefix, int node) {
+        StringBuilder word = new StringBuilder(fromPrefix);
+        while (from != node) {
+            // The sub-tree holding the node is that of the last child which starts at or before it (the children are
+            // numbered in order).
+            int low = firstKid.get(from);
+            int high = firstKid.get(from + 1) - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (kids.get(middle) <= node)
+                    low = middle;
+                else
+                    high = middle - 1;
+            }
+            word.append(keys.get(low));
+            from = kids.get(low);
+        }
+        return word.toString();
+    }
+
+    /**
+     * Packs a queue entry so that ordering the longs (unsigned) orders the entries by popularity (greatest first),
+     * then by node index. The lowest bit is clear for a word and set for a whole sub-tree.
+     */
+    private static long entry(int score, int node, boolean isWord) {
+        long rank = (score ^ Integer.MAX_VALUE) & 0xFFFFFFFFL;
+        return rank << 32 | (long) node << 1 | (isWord ? 0 : 1);
+    }
+
+    /**
+     * A binary min-heap of longs compared as unsigned values.
+     */
+    private static final class LongHeap {
+        private long[] heap = new long[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(long value) {
+            if (size == heap.length)
+                heap = Arrays.copyOf(heap, size * 2);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (Long.compareUnsigned(heap[parent], value) <= 0)
+                    break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long poll() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && Long.compareUnsigned(heap[child + 1], heap[child]) < 0)
+                    child++;
+                if (Long.compareUnsigned(last, heap[child]) <= 0)
+                    break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+
+    /**
+     * Collects the nodes of a DictionaryTree, in depth-first order, into the arrays of a FrozenDictionary.
+     */
+    static final class Builder {
+        private final char[] labels;
+        private final int[] end;
+        private final int[] popularity;
+        private final int[] best;
+        private final long[] words;
+        private final int[] firstKid;
+        private final int[] kids;
+        private final char[] keys;
+        private int next;
+        private int nextKid;
+        // The next free place in kids of each node whose sub-tree is still open, from the root down.
+        private int[] slots = new int[16];
+        private int depth;
+
+        /**
+         * @param size the number of nodes in the tree being frozen
+         */
+        Builder(int size) {
+            labels = new char[size];
+            end = new int[size];
+            popularity = new int[size];
+            best = new int[size];
+            words = new long[(size + 63) >>> 6];
+            firstKid = new int[size + 1];
+            kids = new int[size];
+            keys = new char[size];
+        }
+
+        /**
+         * Adds the next node in depth-first order. Its sub-tree must be added before the matching call to close(),
+         * with its children in the order of their labels.
+         *
+         * @param wordPopularity the popularity of the node's word, or UNRANKED if it has none (or is not a word)
+         * @param children the number of children of the node
+         * @return the index of the node
+         */
+        int open(char label, boolean isWord, int wordPopularity, int bestPopularity, int children) {
+            int node = next++;
+            labels[node] = label;
+            popularity[node] = isWord ? wordPopularity : UNRANKED;
+            best[node] = bestPopularity;
+            if (isWord)
+                words[node >>> 6] |= 1L << node;
+            if (depth > 0) {
+                int slot = slots[depth - 1]++;
+                kids[slot] = node;
+                keys[slot] = label;
+            }
+            firstKid[node] = nextKid;
+            nextKid += children;
+            if (depth == slots.length)
+                slots = Arrays.copyOf(slots, depth * 2);
+            slots[depth++] = firstKid[node];
+            return node;
+        }
+
+        /**
+         * Marks the end of the sub-tree of the given node.
+         */
+        void close(int node) {
+            end[node] = next;
+            depth--;
+        }
+
+        FrozenDictionary build() {
+            firstKid[next] = nextKid;
+            return new FrozenDictionary(CharBuffer.wrap(labels), IntBuffer.wrap(end), IntBuffer.wrap(popularity),
+                    IntBuffer.wrap(best), LongBuffer.wrap(words), IntBuffer.wrap(firstKid), IntBuffer.wrap(kids),
+                    CharBuffer.wrap(keys), 0, "");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dictionarytree;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values (e.g. latencies in nanoseconds) which can be recorded from many threads at once,
+ * in the style of HdrHistogram. Each power of two is split into SUB_BUCKETS buckets of equal width, so every value is
+ * counted with a relative error of at most 1 / SUB_BUCKETS, whatever its size, in a fixed array of counts - recording
+ * a value never allocates.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below SUB_BUCKETS have a bucket each, then each power of two from SUB_BUCKETS up has SUB_BUCKETS.
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Counts a value (negative values are counted as 0).
+     */
+    void record(long value) {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the greatest value which is counted in the given bucket
+     */
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean of the values recorded, or 0 if there are none
+     */
+    double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @return the greatest value recorded, or 0 if there are none
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Finds the value below which the given fraction of the recorded values lie, to within the width of its bucket
+     * (the top of the bucket is returned, but never more than the greatest value recorded).
+     *
+     * @param fraction the fraction of values, e.g. 0.99 for the 99th percentile
+     * @return the value at that fraction, or 0 if no values have been recorded
+     */
+    long percentile(double fraction) {
+        long total = 0;
+        for (int i = 0 ; i < BUCKETS ; i++)
+            total += counts.get(i);
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0 ; i < BUCKETS ; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestIn(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Forgets every value recorded. Values recorded at the same time may be partly forgotten.
+     */
+    void reset() {
+        for (int i = 0 ; i < BUCKETS ; i++)
+            counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    public String toString() {
+        return "Histogram(count = " + count() + ", mean = " + mean() + ", p50 = " + percentile(0.5) + ", p99 = "
+                + percentile(0.99) + ", max = " + max() + ")";
+    }
+}
@@ -0,0 +1,292 @@
+package dictionarytree;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A client for PredictionServer which sends predictions as fast as the server answers them, from several connections
+ * at once, and reports the latency percentiles and throughput. The prefixes are random prefixes of the words of a word
+ * list, so the load resembles autocomplete of those words.
+ *
+ * By default each connection keeps pipelineDepth requests outstanding: it sends a batch of that many, reads their
+ * responses, and repeats. The latency of a request is from the moment its batch was sent to the moment its response
+ * was read, so it includes the time spent behind the other requests of the batch, as a pipelined client would see it.
+ * This is a closed loop - a slow response delays the requests after it, so a stall is recorded once rather than for
+ * every request which would have arrived during it, and the percentiles look better than users would find them.
+ *
+ * Given a rate, the requests are instead sent at fixed times (an open loop): each connection sends one request every
+ * connections / rate seconds, whether or not the earlier ones have been answered, and the latency of each request is
+ * measured from the time it was meant to be sent. A request which is sent late, because the connection was blocked
+ * behind a slow server, is charged for the wait, so the percentiles include every request a stall delayed.
+ *
+ * Usage: LoadGenerator address wordsFile [connections [seconds [pipelineDepth [predictions [rate]]]]], where address
+ * is a port, host:port or the path of a Unix-domain socket, as given to CLI --serve, and rate is the total number of
+ * requests per second for the open loop (0, the default, for the closed loop - pipelineDepth only applies to it).
+ */
+public class LoadGenerator {
+    private final SocketAddress address;
+    private final List<String> prefixes;
+    private final Histogram latencies = new Histogram();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * @param address the address of the server
+     * @param words the words whose prefixes are sent as requests
+     */
+    LoadGenerator(SocketAddress address, List<String> words) {
+        this.address = address;
+        this.prefixes = words;
+        if (words.isEmpty())
+            throw new IllegalArgumentException("There are no words to take prefixes from");
+    }
+
+    /**
+     * Sends requests from the given number of connections for the given time, each connection sending the next batch
+     * of pipelineDepth requests as soon as the last has been answered.
+     *
+     * @return the report of the run
+     * @throws IOException if a connection could not be made
+     * @throws InterruptedException if interrupted while waiting for the connections to finish
+     */
+    Report run(int connections, double seconds, int pipelineDepth, int predictions)
+            throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        return run(connections, (channel, index) -> drive(channel, new SplittableRandom(index), deadline,
+                pipelineDepth, predictions));
+    }
+
+    /**
+     * Sends requests at a fixed total rate from the given number of connections for the given time, measuring the
+     * latency of each request from the time it was meant to be sent (see the class comment).
+     *
+     * @param rate the total number of requests per second
+     * @return the report of the run
+     * @throws IOException if a connection could not be made
+     * @throws InterruptedException if interrupted while waiting for the connections to finish
+     */
+    Report runAtRate(int connections, double seconds, double rate, int predictions)
+            throws IOException, InterruptedException {
+        if (!(rate > 0))
+            throw new IllegalArgumentException("The rate must be positive");
+        long interval = Math.max(1, (long) (connections * 1e9 / rate));
+        long requests = Math.max(1, (long) (seconds * rate / connections));
+        long start = System.nanoTime();
+        // The connections are staggered, so that together they send at an even rate.
+        return run(connections, (channel, index) -> driveAtRate(channel, new SplittableRandom(index),
+                start + index * interval / connections, interval, requests, predictions));
+    }
+
+    /**
+     * Sends the requests of one connection, the given index among the connections of a run.
+     */
+    @FunctionalInterface
+    private interface Driver {
+        void drive(SocketChannel channel, int index) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Connects the given number of times, and runs the driver of each connection in its own thread.
+     */
+    private Report run(int connections, Driver driver) throws IOException, InterruptedException {
+        List<SocketChannel> channels = new ArrayList<>();
+        for (int i = 0; i < connections; i++)
+            channels.add(connect());
+        List<Thread> threads = new ArrayList<>();
+        Exception[] failure = new Exception[1];
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = channels.get(i);
+            int index = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    driver.drive(channel, index);
+                } catch (IOException | InterruptedException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "load-generator-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads)
+            thread.join();
+        long elapsed = System.nanoTime() - start;
+        if (failure[0] instanceof IOException)
+            throw (IOException) failure[0];
+        if (failure[0] != null)
+            throw (InterruptedException) failure[0];
+        return new Report(latencies, busy.sum(), errors.sum(), elapsed);
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+        channel.connect(address);
+        return channel;
+    }
+
+    /**
+     * @return a random request, for a prefix of a random word
+     */
+    private String request(SplittableRandom random, int predictions) {
+        String word = prefixes.get(random.nextInt(prefixes.size()));
+        return predictions + " " + word.substring(0, 1 + random.nextInt(word.length()));
+    }
+
+    /**
+     * Sends batches of requests on one connection until the deadline.
+     */
+    private void drive(SocketChannel channel, SplittableRandom random, long deadline, int pipelineDepth,
+                       int predictions) throws IOException {
+        try (channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                     StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                     StandardCharsets.UTF_8))) {
+            while (System.nanoTime() < deadline) {
+                for (int i = 0; i < pipelineDepth; i++) {
+                    out.write(request(random, predictions));
+                    out.write('\n');
+                }
+                long sent = System.nanoTime();
+                out.flush();
+                for (int i = 0; i < pipelineDepth; i++)
+                    record(in.readLine(), sent);
+            }
+        }
+    }
+
+    /**
+     * Sends the given number of requests on one connection, one every interval from the start, while the responses
+     * are read in this thread. Request k is meant to be sent at start + k * interval - the responses come back in
+     * order, so that is also the time the latency of the k-th response is measured from.
+     */
+    private void driveAtRate(SocketChannel channel, SplittableRandom random, long start, long interval,
+                             long requests, int predictions) throws IOException, InterruptedException {
+        IOException[] failure = new IOException[1];
+        // The requests are written straight to the channel rather than through a stream, since the streams of a
+        // channel hold its blocking lock while they wait, which would stop the requests while a response is read.
+        Thread sender = new Thread(() -> {
+            try {
+                for (long k = 0 ; k < requests && !Thread.currentThread().isInterrupted() ; k++) {
+                    long wait;
+                    while ((wait = start + k * interval - System.nanoTime()) > 0
+                            && !Thread.currentThread().isInterrupted())
+                        LockSupport.parkNanos(wait);
+                    ByteBuffer bytes = StandardCharsets.UTF_8.encode(request(random, predictions) + "\n");
+                    while (bytes.hasRemaining())
+                        channel.write(bytes);
+                }
+            } catch (IOException e) {
+                // Unless the reader has already given up and closed the channel, close it to stop the reader waiting
+                // for responses which will never come.
+                if (channel.isOpen()) {
+                    failure[0] = e;
+                    try {
+                        channel.close();
+                    } catch (IOException closing) {
+                        e.addSuppressed(closing);
+                    }
+                }
+            }
+        }, Thread.currentThread().getName() + "-sender");
+        try (channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                     StandardCharsets.UTF_8))) {
+            sender.start();
+            for (long k = 0 ; k < requests ; k++)
+                record(in.readLine(), start + k * interval);
+        } catch (IOException e) {
+            sender.join();
+            throw failure[0] != null ? failure[0] : e;
+        } finally {
+            sender.interrupt();
+            sender.join();
+        }
+    }
+
+    /**
+     * Records the response to a request sent (or meant to be sent) at the given time.
+     */
+    private void record(String response, long sent) throws IOException {
+        if (response == null)
+            throw new IOException("The server closed the connection");
+        latencies.record(System.nanoTime() - sent);
+        if (response.equals(PredictionServer.BUSY))
+            busy.increment();
+        else if (!response.startsWith(PredictionServer.OK))
+            errors.increment();
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    static final class Report {
+        final Histogram latencies;
+        final long busy;
+        final long errors;
+        final long elapsedNanos;
+
+        Report(Histogram latencies, long busy, long errors, long elapsedNanos) {
+            this.latencies = latencies;
+            this.busy = busy;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the number of responses per second (including BUSY responses)
+         */
+        double qps() {
+            return latencies.count() / (elapsedNanos / 1e9);
+        }
+
+        public String toString() {
+            return String.format("%d requests in %.1fs = %.0f QPS, p50 = %.1fus, p99 = %.1fus, p999 = %.1fus, "
+                            + "max = %.1fus, busy = %d, errors = %d",
+                    latencies.count(), elapsedNanos / 1e9, qps(), latencies.percentile(0.5) / 1e3,
+                    latencies.percentile(0.99) / 1e3, latencies.percentile(0.999) / 1e3, latencies.max() / 1e3,
+                    busy, errors);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: LoadGenerator address wordsFile [connections [seconds [pipelineDepth "
+                    + "[predictions [rate]]]]]");
+            System.exit(2);
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : Files.readAllLines(new File(args[1]).toPath(), StandardCharsets.UTF_8)) {
+            if (!word.isEmpty())
+                words.add(word);
+        }
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        int pipelineDepth = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int predictions = args.length > 5 ? Integer.parseInt(args[5]) : 5;
+        double rate = args.length > 6 ? Double.parseDouble(args[6]) : 0;
+        LoadGenerator generator = new LoadGenerator(PredictionServer.address(args[0]), words);
+        System.out.println(rate > 0 ? generator.runAtRate(connections, seconds, rate, predictions)
+                : generator.run(connections, seconds, pipelineDepth, predictions));
+    }
+}
@@ -0,0 +1,48 @@
+package dictionarytree;
+
+import java.util.List;
+
+/**
+ * A shard held in this process, in a ConcurrentDictionaryTree - so predictions are answered while words are being
+ * inserted, and writes to different shards never wait for each other.
+ */
+public class LocalShard implements DictionaryShard {
+    private final ConcurrentDictionaryTree tree = new ConcurrentDictionaryTree();
+
+    @Override
+    public void insert(String word) {
+        tree.insert(word);
+    }
+
+    @Override
+    public void insert(String word, int popularity) {
+        tree.insert(word, popularity);
+    }
+
+    @Override
+    public boolean remove(String word) {
+        return tree.remove(word);
+    }
+
+    @Override
+    public boolean contains(String word) {
+        return tree.contains(word);
+    }
+
+    @Override
+    public List<Word> predict(String prefix, int n) {
+        return tree.predictWords(prefix, n);
+    }
+
+    @Override
+    public int numWords() {
+        return tree.numWords();
+    }
+
+    /**
+     * @return the tree holding the words of this shard
+     */
+    ConcurrentDictionaryTree tree() {
+        return tree;
+    }
+}
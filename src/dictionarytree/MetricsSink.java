@@ -0,0 +1,16 @@
+package dictionarytree;
+
+/**
+ * Receives every operation recorded by a DictionaryMetrics, e.g. to forward it to a monitoring system. It is called
+ * by the thread which carried out the operation, straight after it, so it should be quick and must be thread-safe.
+ */
+@FunctionalInterface
+public interface MetricsSink {
+
+    /**
+     * @param operation the operation carried out
+     * @param nanos how long it took
+     * @param nodesVisited the number of nodes of the tree it visited (only counted for predictions - 0 otherwise)
+     */
+    void record(DictionaryMetrics.Operation operation, long nanos, int nodesVisited);
+}
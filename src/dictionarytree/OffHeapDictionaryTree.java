@@ -0,0 +1,444 @@
+package dictionarytree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * A dictionary with the same operations as DictionaryTree whose nodes are held outside the Java heap, in direct
+ * ByteBuffers, so that a tree of hundreds of millions of nodes adds almost nothing for the garbage collector to trace.
+ * The heap only holds one ByteBuffer object per CHUNK_NODES nodes, so its footprint barely grows with the tree.
+ *
+ * Every node is a fixed-size record, addressed by its number:
+ *
+ *   offset 0   int    first child (NIL if none)
+ *   offset 4   int    next sibling (NIL if none) - siblings are kept in order of their labels
+ *   offset 8   int    popularity of the word ending here
+ *   offset 12  int    best popularity of any word in the sub-tree, as DictionaryTree keeps
+ *   offset 16  char   the character branched on to reach this node
+ *   offset 18  short  flags - IS_WORD, HAS_POPULARITY
+ *
+ * A node's children are a linked list through their next sibling fields, so no node needs a variable-size table of
+ * children. Words are not stored - they are rebuilt from the labels on their path when they are returned.
+ *
+ * Nodes freed by remove() are put on a free list and reused by later inserts. compact() copies the tree into new
+ * buffers in depth-first order, with the children of each node next to each other, which packs the nodes and gives
+ * lookups better locality - the old buffers are released when they are garbage collected.
+ *
+ * Not thread-safe.
+ */
+public class OffHeapDictionaryTree {
+    private static final int NIL = -1;
+    private static final int ROOT = 0;
+
+    private static final int FIRST_CHILD = 0;
+    private static final int NEXT_SIBLING = 4;
+    private static final int POPULARITY = 8;
+    private static final int BEST = 12;
+    private static final int LABEL = 16;
+    private static final int FLAGS = 18;
+    private static final int RECORD_BYTES = 20;
+
+    private static final short IS_WORD = 1;
+    private static final short HAS_POPULARITY = 2;
+
+    private static final int CHUNK_BITS = 16;
+    static final int CHUNK_NODES = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_NODES - 1;
+    // Nodes are numbered with non-negative ints (NIL is -1), and allocated must not overflow, so there can be at most
+    // 2^31 - 1 of them - 32768 chunks, the last one less a record.
+    static final int MAX_NODES = Integer.MAX_VALUE;
+
+    // Ranking value given to words which were inserted without a popularity, so they are predicted last.
+    private static final int UNRANKED = Integer.MIN_VALUE;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    // The number of node records handed out (including those now on the free list).
+    private int allocated;
+    // The first node of the free list, linked through the next sibling field.
+    private int free = NIL;
+    private int freeCount;
+    private int wordCount;
+
+    OffHeapDictionaryTree() {
+        allocate('\0');
+    }
+
+    // Reading and writing the fields of a node.
+
+    private ByteBuffer chunk(int node) {
+        return chunks[node >>> CHUNK_BITS];
+    }
+
+    private static int offset(int node) {
+        return (node & CHUNK_MASK) * RECORD_BYTES;
+    }
+
+    private int firstChild(int node) {
+        return chunk(node).getInt(offset(node) + FIRST_CHILD);
+    }
+
+    private int nextSibling(int node) {
+        return chunk(node).getInt(offset(node) + NEXT_SIBLING);
+    }
+
+    private int popularity(int node) {
+        return chunk(node).getInt(offset(node) + POPULARITY);
+    }
+
+    private int best(int node) {
+        return chunk(node).getInt(offset(node) + BEST);
+    }
+
+    private char label(int node) {
+        return chunk(node).getChar(offset(node) + LABEL);
+    }
+
+    private short flags(int node) {
+        return chunk(node).getShort(offset(node) + FLAGS);
+    }
+
+    private boolean isWord(int node) {
+        return (flags(node) & IS_WORD) != 0;
+    }
+
+    private int ranking(int node) {
+        short flags = flags(node);
+        return (flags & IS_WORD) != 0 && (flags & HAS_POPULARITY) != 0 ? popularity(node) : UNRANKED;
+    }
+
+    private void setFirstChild(int node, int child) {
+        chunk(node).putInt(offset(node) + FIRST_CHILD, child);
+    }
+
+    private void setNextSibling(int node, int sibling) {
+        chunk(node).putInt(offset(node) + NEXT_SIBLING, sibling);
+    }
+
+    private void setBest(int node, int best) {
+        chunk(node).putInt(offset(node) + BEST, best);
+    }
+
+    private void setWord(int node, boolean isWord, int popularity, boolean hasPopularity) {
+        boolean ranked = isWord && hasPopularity;
+        ByteBuffer chunk = chunk(node);
+        chunk.putInt(offset(node) + POPULARITY, ranked ? popularity : 0);
+        chunk.putShort(offset(node) + FLAGS, (short) ((isWord ? IS_WORD : 0) | (ranked ? HAS_POPULARITY : 0)));
+    }
+
+    /**
+     * @return a new node with the given label, no word and no children - from the free list if possible
+     */
+    private int allocate(char label) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = nextSibling(node);
+            freeCount--;
+        } else {
+            if (allocated == MAX_NODES)
+                throw new IllegalStateException("An off-heap tree cannot hold more than " + MAX_NODES + " nodes");
+            if (allocated == (long) chunks.length * CHUNK_NODES) {
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = ByteBuffer.allocateDirect(CHUNK_NODES * RECORD_BYTES)
+                        .order(ByteOrder.nativeOrder());
+            }
+            node = allocated++;
+        }
+        setFirstChild(node, NIL);
+        setNextSibling(node, NIL);
+        setBest(node, UNRANKED);
+        chunk(node).putChar(offset(node) + LABEL, label);
+        setWord(node, false, 0, false);
+        return node;
+    }
+
+    private void release(int node) {
+        setNextSibling(node, free);
+        free = node;
+        freeCount++;
+    }
+
+    /**
+     * @return the child of the node with the given label, or NIL if there is none
+     */
+    private int child(int node, char label) {
+        for (int child = firstChild(node) ; child != NIL ; child = nextSibling(child)) {
+            char childLabel = label(child);
+            if (childLabel == label)
+                return child;
+            if (childLabel > label)
+                return NIL; // The siblings are in order, so it is not further on.
+        }
+        return NIL;
+    }
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists (or is empty), nothing will change.
+     *
+     * @param word the word to insert
+     * @throws IllegalStateException if the tree could need more than MAX_NODES nodes to hold it
+     */
+    void insert(String word) {
+        if (!word.isEmpty() && !contains(word))
+            insertNewWord(word, 0, false);
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists (or is empty), nothing will change.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     * @throws IllegalStateException if the tree could need more than MAX_NODES nodes to hold it
+     */
+    void insert(String word, int popularity) {
+        if (!word.isEmpty() && !contains(word))
+            insertNewWord(word, popularity, true);
+    }
+
+    private void insertNewWord(String word, int popularity, boolean hasPopularity) {
+        // Checked before anything is changed, so that a word which does not fit leaves the tree as it was.
+        if ((long) MAX_NODES - allocated + freeCount < word.length())
+            throw new IllegalStateException("An off-heap tree cannot hold more than " + MAX_NODES + " nodes");
+        int ranking = hasPopularity ? popularity : UNRANKED;
+        int node = ROOT;
+        setBest(node, Math.max(best(node), ranking));
+        for (int i = 0 ; i < word.length() ; i++) {
+            char label = word.charAt(i);
+            // Find the child, or the sibling it belongs after.
+            int previous = NIL;
+            int child = firstChild(node);
+            while (child != NIL && label(child) < label) {
+                previous = child;
+                child = nextSibling(child);
+            }
+            if (child == NIL || label(child) != label) {
+                int added = allocate(label);
+                setNextSibling(added, child);
+                if (previous == NIL)
+                    setFirstChild(node, added);
+                else
+                    setNextSibling(previous, added);
+                child = added;
+            }
+            node = child;
+            setBest(node, Math.max(best(node), ranking));
+        }
+        setWord(node, true, popularity, hasPopularity);
+        wordCount++;
+    }
+
+    /**
+     * Removes the specified word from this dictionary, freeing every node which no longer holds a word or has any
+     * children.
+     *
+     * @param word the word to delete from this dictionary
+     * @return the same value as DictionaryTree.remove(word)
+     */
+    boolean remove(String word) {
+        if (!contains(word))
+            return false;
+        int[] path = new int[word.length() + 1];
+        path[0] = ROOT;
+        for (int i = 0 ; i < word.length() ; i++)
+            path[i + 1] = child(path[i], word.charAt(i));
+        int node = path[word.length()];
+        boolean wasLeaf = firstChild(node) == NIL;
+        setWord(node, false, 0, false);
+        wordCount--;
+
+        int depth = word.length();
+        // Free the nodes at the end of the path which are now empty.
+        while (depth > 0 && !isWord(path[depth]) && firstChild(path[depth]) == NIL) {
+            unlink(path[depth - 1], path[depth]);
+            release(path[depth]);
+            depth--;
+        }
+        // The best popularity of the nodes left on the path may have come from the word.
+        for ( ; depth >= 0 ; depth--) {
+            int best = ranking(path[depth]);
+            for (int child = firstChild(path[depth]) ; child != NIL ; child = nextSibling(child))
+                best = Math.max(best, best(child));
+            setBest(path[depth], best);
+        }
+        return wasLeaf;
+    }
+
+    private void unlink(int parent, int node) {
+        int first = firstChild(parent);
+        if (first == node) {
+            setFirstChild(parent, nextSibling(node));
+            return;
+        }
+        int previous = first;
+        while (nextSibling(previous) != node)
+            previous = nextSibling(previous);
+        setNextSibling(previous, nextSibling(node));
+    }
+
+    boolean contains(String word) {
+        if (word.isEmpty())
+            return false;
+        int node = findPrefix(word);
+        return node != NIL && isWord(node);
+    }
+
+    /**
+     * @return the node at the end of the prefix, or NIL if it is not in the tree
+     */
+    private int findPrefix(String prefix) {
+        int node = ROOT;
+        for (int i = 0 ; i < prefix.length() && node != NIL ; i++)
+            node = child(node, prefix.charAt(i));
+        return node;
+    }
+
+    /**
+     * As DictionaryTree.predict(prefix) - the most popular word which starts with the prefix, other than the prefix
+     * itself (the first of the two most popular words which is not the prefix).
+     */
+    Optional<String> predict(String prefix) {
+        for (String word : predict(prefix, 2)) {
+            if (!word.equals(prefix))
+                return Optional.of(word);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Predicts the (at most) n most popular words starting with the prefix, with the same best-first search and the
+     * same result as DictionaryTree.predict(prefix, n).
+     *
+     * @param prefix the prefix of the words found
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words with the prefix, most popular first
+     */
+    List<String> predict(String prefix, int n) {
+        List<String> predictions = new ArrayList<>();
+        int start = findPrefix(prefix);
+        if (start == NIL)
+            return predictions;
+        PriorityQueue<Candidate<Integer>> queue = new PriorityQueue<>();
+        queue.add(new Candidate<>(start, null, 0, best(start), false));
+        while (predictions.size() < n && !queue.isEmpty()) {
+            Candidate<Integer> next = queue.poll();
+            if (next.isWord) {
+                predictions.add(wordOf(prefix, next.parent));
+                continue;
+            }
+            if (isWord(next.node))
+                queue.add(new Candidate<>(next.node, next, -1, ranking(next.node), true));
+            int index = 0;
+            for (int child = firstChild(next.node) ; child != NIL ; child = nextSibling(child))
+                queue.add(new Candidate<>(child, next, index++, best(child), false));
+        }
+        return predictions;
+    }
+
+    /**
+     * @return the word at the node of the given entry, which is the prefix followed by the labels below it (one for
+     * each entry between the start of the search and this one, since only sub-trees have entries below them)
+     */
+    private String wordOf(String prefix, Candidate<Integer> candidate) {
+        char[] rest = new char[candidate.depth];
+        for (Candidate<Integer> c = candidate ; c.parent != null ; c = c.parent)
+            rest[c.depth - 1] = label(c.node);
+        return prefix + new String(rest);
+    }
+
+    /**
+     * @return all words stored in this tree, in alphabetical order
+     */
+    List<String> allWords() {
+        List<String> all = new ArrayList<>();
+        StringBuilder path = new StringBuilder();
+        // A depth-first walk without recursion or a stack - the path of labels is the only state kept.
+        int[] nodes = new int[16];
+        int depth = 0;
+        nodes[0] = firstChild(ROOT);
+        while (depth >= 0) {
+            int node = nodes[depth];
+            if (node == NIL) {
+                depth--;
+                if (depth >= 0) {
+                    path.setLength(depth);
+                    nodes[depth] = nextSibling(nodes[depth]);
+                }
+                continue;
+            }
+            path.setLength(depth);
+            path.append(label(node));
+            if (isWord(node))
+                all.add(path.toString());
+            if (++depth == nodes.length)
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            nodes[depth] = firstChild(node);
+        }
+        return all;
+    }
+
+    /**
+     * @return the number of words stored in this tree
+     */
+    int numWords() {
+        return wordCount;
+    }
+
+    /**
+     * @return the number of nodes in this tree (not counting freed nodes waiting to be reused)
+     */
+    int size() {
+        return allocated - freeCount;
+    }
+
+    /**
+     * @return the bytes of direct memory held by this tree, including freed nodes and the unused end of the last
+     * chunk
+     */
+    long offHeapBytes() {
+        return (long) chunks.length * CHUNK_NODES * RECORD_BYTES;
+    }
+
+    /**
+     * Copies the tree into new buffers, leaving out the freed nodes, with the nodes in depth-first order and the
+     * children of each node next to each other. The old buffers are released once they are garbage collected.
+     */
+    void compact() {
+        OffHeapDictionaryTree copy = new OffHeapDictionaryTree();
+        copy.setBest(ROOT, best(ROOT));
+        // Pairs of a node of this tree and its copy, whose children are still to be copied.
+        int[] stack = new int[32];
+        int top = 0;
+        stack[top++] = ROOT;
+        stack[top++] = ROOT;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            int previous = NIL;
+            for (int child = firstChild(from) ; child != NIL ; child = nextSibling(child)) {
+                int copied = copy.allocate(label(child));
+                copy.setBest(copied, best(child));
+                copy.setWord(copied, isWord(child), popularity(child), (flags(child) & HAS_POPULARITY) != 0);
+                if (previous == NIL)
+                    copy.setFirstChild(to, copied);
+                else
+                    copy.setNextSibling(previous, copied);
+                previous = copied;
+                if (top + 2 > stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = child;
+                stack[top++] = copied;
+            }
+        }
+        chunks = copy.chunks;
+        allocated = copy.allocated;
+        free = NIL;
+        freeCount = 0;
+    }
+}
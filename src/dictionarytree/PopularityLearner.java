@@ -0,0 +1,212 @@
+package dictionarytree;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Learns the popularity of words from the predictions users select, so that the ranking of predict(prefix, n) follows
+ * live usage rather than staying as it was loaded.
+ *
+ * Each word has a count of its selections in which every selection counts for half as much after each halfLife, so
+ * recent selections matter most. The counts use forward decay: a selection at time t adds 2^(t / halfLife) to the
+ * word's score, with t measured from when the learner was made, and the decayed count of a word at any time "now" is
+ * its score divided by 2^(now / halfLife). A selection only touches the word selected, in O(word length) (see
+ * DictionaryTree.updatePopularity). The scores grow exponentially, so they are kept as log2 scores.
+ *
+ * The popularity given to a word is its base popularity - the popularity it had in the dictionary when it was first
+ * selected - plus a boost of round(SCALE * log2(1 + decayed count)). One selection lifts a word by SCALE, and each
+ * doubling of its decayed count by up to SCALE more, so a word selected often enough overtakes the words above it, but
+ * as its selections grow old the boost falls back to 0 and the word returns to its place in the loaded ranking. A word
+ * which had no popularity is boosted from the bottom of the ranking (Integer.MIN_VALUE), so it only overtakes the
+ * other words without one, and once it is forgotten its popularity is taken away again. The boost depends on the
+ * time, so the popularity written to the dictionary is the one at the time of the word's last selection: refresh()
+ * writes the current boost of every learned word, and should be called regularly (e.g. every tenth of a half-life)
+ * for boosts to fade - it also forgets the words whose boost has gone.
+ *
+ * select may be called from several threads if the dictionary is safe to update concurrently (e.g. a
+ * ConcurrentDictionaryTree). The dictionary is never updated while an entry of the learner is locked; instead, each
+ * selection makes a new state for the word, and whoever writes a state to the dictionary checks afterwards that it is
+ * still the latest one, writing the latest one if not - so the dictionary always ends up with the latest selection.
+ */
+public class PopularityLearner {
+    // The boost of a word is this many times the log2 of (1 + its decayed count), so counts which differ by less than
+    // about a 1/1024th part may be ranked as equals.
+    static final int SCALE = 1024;
+    // The base of a word which had no popularity.
+    private static final int UNRANKED = Integer.MIN_VALUE;
+
+    /**
+     * A dictionary whose popularities can be changed (or taken away, if hasPopularity is false) in place.
+     */
+    @FunctionalInterface
+    interface Target {
+        boolean updatePopularity(String word, int popularity, boolean hasPopularity);
+    }
+
+    private final Function<String, Optional<Word>> lookup;
+    private final Target dictionary;
+    private final double halfLifeNanos;
+    private final LongSupplier clock;
+    private final long landmark;
+    // What has been learned of each word which has been selected and whose boost has not yet faded.
+    private final Map<String, Learned> learned = new ConcurrentHashMap<>();
+
+    /**
+     * @param lookup finds a word and its popularity in the dictionary, e.g. tree::lookup
+     * @param dictionary the dictionary whose popularities are learned, e.g. tree::updatePopularity - a DictionaryTree
+     *                   must not be read while select or refresh is called, but a ConcurrentDictionaryTree can be
+     * @param halfLifeNanos the time after which a selection counts for half as much
+     * @param clock the time in nanoseconds, e.g. System::nanoTime
+     */
+    PopularityLearner(Function<String, Optional<Word>> lookup, Target dictionary, long halfLifeNanos,
+                      LongSupplier clock) {
+        if (halfLifeNanos <= 0)
+            throw new IllegalArgumentException("The half-life must be positive");
+        this.lookup = lookup;
+        this.dictionary = dictionary;
+        this.halfLifeNanos = halfLifeNanos;
+        this.clock = clock;
+        this.landmark = clock.getAsLong();
+    }
+
+    PopularityLearner(DictionaryTree dictionary, long halfLifeNanos) {
+        this(dictionary::lookup, dictionary::updatePopularity, halfLifeNanos, System::nanoTime);
+    }
+
+    PopularityLearner(ConcurrentDictionaryTree dictionary, long halfLifeNanos) {
+        this(dictionary::lookup, dictionary::updatePopularity, halfLifeNanos, System::nanoTime);
+    }
+
+    /**
+     * Records that a user selected the given word, and raises its popularity accordingly.
+     *
+     * @param word the word selected
+     * @return true if the word is in the dictionary (otherwise nothing is recorded)
+     */
+    boolean select(String word) {
+        Learned known = learned.get(word);
+        Optional<Word> found = known != null ? Optional.empty() : lookup.apply(word);
+        if (known == null && !found.isPresent())
+            return false;
+        int base = known != null ? known.base : found.get().getPopularityOptional().orElse(UNRANKED);
+        double now = now();
+        // Only the score is worked out while the entry is locked - the dictionary is updated afterwards.
+        Learned selected = learned.compute(word, (w, old) -> old == null ? new Learned(base, now) : old.add(now));
+        return publish(word, selected.base, selected);
+    }
+
+    /**
+     * Writes the current popularity of every learned word to the dictionary, so that the boosts of words which have
+     * not been selected lately fade, and forgets the words whose boost has faded to nothing (their popularity is then
+     * their base popularity again). This takes O(total length of the learned words).
+     */
+    void refresh() {
+        double now = now();
+        for (Map.Entry<String, Learned> entry : learned.entrySet()) {
+            String word = entry.getKey();
+            Learned state = entry.getValue();
+            if (state.boost(now) == 0 && learned.remove(word, state))
+                publish(word, state.base, null);
+            else
+                publish(word, state.base, state);
+        }
+    }
+
+    /**
+     * @return the number of selections of the word, each decayed by the time since it was made
+     */
+    double decayedCount(String word) {
+        Learned state = learned.get(word);
+        return state == null ? 0 : state.decayedCount(now());
+    }
+
+    /**
+     * Forgets what has been learned of a word, and gives it back its base popularity if it is still in the
+     * dictionary.
+     */
+    void forget(String word) {
+        Learned state = learned.remove(word);
+        if (state != null)
+            publish(word, state.base, null);
+    }
+
+    /**
+     * Writes the popularity of the given state of a word (or its base popularity, for null, which takes its popularity
+     * away if the base is UNRANKED) to the dictionary. If the state has been replaced by the time it is written -
+     * another thread selected the word, and may have written its state first - the latest state is written instead,
+     * until what was written is still the latest.
+     *
+     * @return false if the word is no longer in the dictionary (it is then forgotten)
+     */
+    private boolean publish(String word, int base, Learned state) {
+        while (true) {
+            int popularity = state == null ? base : state.popularity(now());
+            // A boosted popularity is never UNRANKED, since popularity(base, count) stays above it.
+            if (!dictionary.updatePopularity(word, popularity, popularity != UNRANKED)) {
+                if (state != null)
+                    learned.remove(word, state);
+                return false;
+            }
+            Learned latest = learned.get(word);
+            if (latest == state)
+                return true;
+            if (latest != null)
+                base = latest.base;
+            state = latest;
+        }
+    }
+
+    /**
+     * @return the time since the learner was made, in half-lives
+     */
+    private double now() {
+        return (clock.getAsLong() - landmark) / halfLifeNanos;
+    }
+
+    /**
+     * @return the popularity given to a word with the given base popularity (UNRANKED if it had none) and decayed
+     * count
+     */
+    static int popularity(int base, double decayedCount) {
+        long boosted = base + Math.round(SCALE * Math.log1p(decayedCount) / Math.log(2));
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, boosted));
+    }
+
+    /**
+     * What has been learned of a word: its base popularity and the log2 of its forward-decayed score. A new state is
+     * made for each selection, so a state can be compared by identity to tell whether it is still the latest.
+     */
+    private static final class Learned {
+        final int base;
+        final double log2Score;
+
+        Learned(int base, double log2Score) {
+            this.base = base;
+            this.log2Score = log2Score;
+        }
+
+        /**
+         * @return this state with a selection at the given time added to the score, in the log2 domain:
+         * log2(2^a + 2^b) = max + log2(1 + 2^-(max - min))
+         */
+        Learned add(double now) {
+            double max = Math.max(log2Score, now);
+            return new Learned(base, max + Math.log1p(Math.pow(2, -Math.abs(log2Score - now))) / Math.log(2));
+        }
+
+        double decayedCount(double now) {
+            return Math.pow(2, log2Score - now);
+        }
+
+        long boost(double now) {
+            return Math.round(SCALE * Math.log1p(decayedCount(now)) / Math.log(2));
+        }
+
+        int popularity(double now) {
+            return PopularityLearner.popularity(base, decayedCount(now));
+        }
+    }
+}
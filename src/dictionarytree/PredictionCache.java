@@ -0,0 +1,156 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A bounded cache of the results of DictionaryTree.predict(prefix, n), enabled with
+ * DictionaryTree.enablePredictionCache(). When it is full, the least recently used result is evicted.
+ *
+ * A result only depends on the words that start with its prefix, so when a word is inserted or removed only the
+ * results for the prefixes of that word are invalidated - every other cached result is still correct.
+ */
+public class PredictionCache {
+    private final int capacity;
+    // The cached results, in order of use (least recently used first).
+    private final LinkedHashMap<Key, List<String>> results;
+    // The keys of the cached results for each prefix, so that a prefix can be invalidated without a search.
+    private final Map<String, Set<Key>> keysByPrefix = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity the greatest number of results to hold
+     */
+    PredictionCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the cached result of predict(prefix, n), or null if it is not cached
+     */
+    synchronized List<String> get(String prefix, int n) {
+        List<String> result = results.get(new Key(prefix, n));
+        if (result == null)
+            misses++;
+        else
+            hits++;
+        return result;
+    }
+
+    /**
+     * Caches the result of predict(prefix, n), evicting the least recently used result if the cache is full.
+     */
+    synchronized void put(String prefix, int n, List<String> result) {
+        Key key = new Key(prefix, n);
+        results.put(key, Collections.unmodifiableList(new ArrayList<>(result)));
+        keysByPrefix.computeIfAbsent(prefix, p -> new HashSet<>()).add(key);
+        if (results.size() > capacity) {
+            Key eldest = results.keySet().iterator().next();
+            results.remove(eldest);
+            forget(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Invalidates every cached result which could include the given word, i.e. the results for each of its prefixes
+     * (and the word itself).
+     *
+     * @param word a word which has been inserted or removed
+     */
+    synchronized void invalidate(String word) {
+        for (int i = 0 ; i <= word.length() ; i++) {
+            Set<Key> keys = keysByPrefix.remove(word.substring(0, i));
+            if (keys != null) {
+                for (Key key : keys)
+                    results.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Empties the cache (the hit and miss counts are kept).
+     */
+    synchronized void clear() {
+        results.clear();
+        keysByPrefix.clear();
+    }
+
+    private void forget(Key key) {
+        Set<Key> keys = keysByPrefix.get(key.prefix);
+        keys.remove(key);
+        if (keys.isEmpty())
+            keysByPrefix.remove(key.prefix);
+    }
+
+    /**
+     * @return the number of calls to predict(prefix, n) answered from the cache
+     */
+    synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of calls to predict(prefix, n) which were not in the cache
+     */
+    synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results evicted to make room for others
+     */
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of results currently cached
+     */
+    synchronized int size() {
+        return results.size();
+    }
+
+    public synchronized String toString() {
+        return "PredictionCache(size = " + results.size() + "/" + capacity + ", hits = " + hits + ", misses = "
+                + misses + ", evictions = " + evictions + ")";
+    }
+
+    /**
+     * The arguments of a call to predict(prefix, n).
+     */
+    private static final class Key {
+        private final String prefix;
+        private final int n;
+
+        Key(String prefix, int n) {
+            this.prefix = prefix;
+            this.n = n;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return n == other.n && prefix.equals(other.prefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(prefix, n);
+        }
+    }
+}
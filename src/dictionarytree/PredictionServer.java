@@ -0,0 +1,348 @@
+package dictionarytree;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Answers predictions for many clients at once from one shared dictionary, over a local TCP or Unix-domain socket.
+ *
+ * The protocol is a line per request and a line per response, in UTF-8. A request is the number of predictions wanted,
+ * a space, and the prefix, which is the rest of the line (so it may be empty or contain spaces), e.g. "5 hel". The
+ * response is "OK" followed by the predictions, each after a tab, e.g. "OK\thello\thelp"; "BUSY" if the server is
+ * overloaded and the request was not answered; or "ERR" and a message if the request could not be parsed. Requests
+ * may be pipelined - a client can send many requests before reading any responses - and the responses come back in
+ * the order of the requests. Responses are only flushed once every request already received has been answered, so a
+ * pipelined batch is answered with few writes. A request line may be at most MAX_REQUEST_CHARS long - a longer one is
+ * answered with ERR and the connection is closed, so that a client cannot make the server buffer an endless line.
+ *
+ * Each connection is served by its own thread, which is a virtual thread when the runtime has them (Java 21 and
+ * later) and otherwise a thread from a cached pool. Admission is controlled by the number of requests being answered
+ * at once: a request which arrives while maxInFlight requests are being answered is refused straight away with BUSY,
+ * rather than queueing behind them, so an overloaded server keeps its latency and the client decides whether to retry.
+ * Connections beyond maxConnections are refused with a single BUSY line.
+ */
+public class PredictionServer implements Closeable {
+    static final String OK = "OK";
+    static final String BUSY = "BUSY";
+    static final String ERR = "ERR";
+    // The most predictions a single request may ask for.
+    static final int MAX_PREDICTIONS = 1000;
+    // The most characters in a request line, not counting its line separator.
+    static final int MAX_REQUEST_CHARS = 4096;
+    // The most characters dropped after a request which is too long, before the connection is closed regardless.
+    private static final long DISCARD_LIMIT = 1 << 20;
+
+    private final Supplier<DictionaryTree> dictionary;
+    private final Semaphore inFlight;
+    private final Semaphore connections;
+    private final AtomicLong answered = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private ServerSocketChannel server;
+    private ExecutorService executor;
+    private Path unixSocket;
+
+    /**
+     * @param dictionary gives the dictionary to answer each request from, e.g. ReloadingDictionary::snapshot - the
+     *                   dictionary must not be changed while the server runs, unless it is safe to read while changed
+     * @param maxInFlight the most requests which are answered at once
+     * @param maxConnections the most clients which are connected at once
+     */
+    PredictionServer(Supplier<DictionaryTree> dictionary, int maxInFlight, int maxConnections) {
+        if (maxInFlight < 1 || maxConnections < 1)
+            throw new IllegalArgumentException("The limits must be positive");
+        this.dictionary = dictionary;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.connections = new Semaphore(maxConnections);
+    }
+
+    /**
+     * Serves the given dictionary, answering up to twice as many requests at once as there are processors.
+     */
+    PredictionServer(DictionaryTree dictionary) {
+        this(() -> dictionary, 2 * Runtime.getRuntime().availableProcessors(), 10_000);
+    }
+
+    /**
+     * Parses the address to listen on: a port number, or host:port, for TCP, or otherwise the path of a Unix-domain
+     * socket.
+     */
+    static SocketAddress address(String address) {
+        int colon = address.lastIndexOf(':');
+        String port = address.substring(colon + 1);
+        if (!port.isEmpty() && port.chars().allMatch(Character::isDigit)) {
+            String host = colon < 0 ? "localhost" : address.substring(0, colon);
+            return new InetSocketAddress(host, Integer.parseInt(port));
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    /**
+     * Starts accepting connections, in a daemon thread.
+     *
+     * @param address the TCP or Unix-domain address to listen on (see address(String))
+     * @return the address listened on, which has the port chosen if port 0 was given
+     * @throws IOException if the address cannot be bound
+     */
+    synchronized SocketAddress start(SocketAddress address) throws IOException {
+        if (server != null)
+            throw new IllegalStateException("Already started");
+        if (address instanceof UnixDomainSocketAddress) {
+            unixSocket = ((UnixDomainSocketAddress) address).getPath();
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        executor = connectionExecutor();
+        Thread acceptor = new Thread(this::accept, "prediction-server " + address);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalAddress();
+    }
+
+    /**
+     * @return an executor which runs each task in a new virtual thread, or in a cached pool of daemon threads before
+     * Java 21
+     */
+    private static ExecutorService connectionExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "prediction-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes those which are open.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server == null)
+            return;
+        server.close();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (unixSocket != null)
+            Files.deleteIfExists(unixSocket);
+        server = null;
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel client = server.accept();
+                if (!connections.tryAcquire()) {
+                    refuse(client);
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        serve(client);
+                    } finally {
+                        connections.release();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // Closed.
+        }
+    }
+
+    private void refuse(SocketChannel client) {
+        refused.incrementAndGet();
+        try (client) {
+            client.write(StandardCharsets.UTF_8.encode(BUSY + "\n"));
+        } catch (IOException e) {
+            // The client has gone anyway.
+        }
+    }
+
+    /**
+     * Answers the requests of one client until it disconnects, or sends a request line which is too long.
+     */
+    private void serve(SocketChannel client) {
+        try (client;
+             RequestReader in = new RequestReader(new InputStreamReader(Channels.newInputStream(client),
+                     StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(client),
+                     StandardCharsets.UTF_8))) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                out.write(request == RequestReader.TOO_LONG ? ERR + "\tthe request is longer than "
+                        + MAX_REQUEST_CHARS + " characters" : answer(request));
+                out.write('\n');
+                if (request == RequestReader.TOO_LONG) {
+                    // Closing with unread input would reset the connection, and the client could lose the ERR, so
+                    // the rest of what it sends is read and dropped (up to a limit) until it closes its end too.
+                    out.flush();
+                    client.shutdownOutput();
+                    in.discard(DISCARD_LIMIT);
+                    return;
+                }
+                // Answer the rest of a pipelined batch before writing.
+                if (!in.ready())
+                    out.flush();
+            }
+        } catch (IOException e) {
+            // The client disconnected.
+        }
+    }
+
+    /**
+     * @param request a line of the protocol, e.g. "5 hel"
+     * @return the response line, without its line separator
+     */
+    String answer(String request) {
+        int space = request.indexOf(' ');
+        int n;
+        try {
+            n = Integer.parseInt(space < 0 ? request : request.substring(0, space));
+        } catch (NumberFormatException e) {
+            return ERR + "\texpected \"<number of predictions> <prefix>\"";
+        }
+        if (n < 0 || n > MAX_PREDICTIONS)
+            return ERR + "\tthe number of predictions must be between 0 and " + MAX_PREDICTIONS;
+        if (!inFlight.tryAcquire()) {
+            refused.incrementAndGet();
+            return BUSY;
+        }
+        StringBuilder response = new StringBuilder(OK);
+        try {
+            String prefix = space < 0 ? "" : request.substring(space + 1);
+            // An empty prefix predicts the most popular words of the whole dictionary.
+            for (String prediction : dictionary.get().predict(prefix, n))
+                response.append('\t').append(prediction);
+        } finally {
+            inFlight.release();
+        }
+        answered.incrementAndGet();
+        return response.toString();
+    }
+
+    /**
+     * @return the number of requests answered
+     */
+    long answered() {
+        return answered.get();
+    }
+
+    /**
+     * @return the number of requests and connections refused with BUSY
+     */
+    long refused() {
+        return refused.get();
+    }
+
+    /**
+     * Reads the request lines of one client, as BufferedReader.readLine() does (a line ends at \n, \r or \r\n), but
+     * never holds more than MAX_REQUEST_CHARS characters of a line.
+     */
+    private static final class RequestReader implements Closeable {
+        // Returned (by identity) in place of a line which is too long.
+        static final String TOO_LONG = new String("");
+
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        // Whether the last line ended with \r, so a \n straight after it is part of the same separator.
+        private boolean skipNewline;
+
+        RequestReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next line, without its separator, TOO_LONG if it has more than MAX_REQUEST_CHARS characters, or
+         * null at the end of the input
+         */
+        String readLine() throws IOException {
+            StringBuilder line = null;
+            while (true) {
+                if (position == limit && !fill())
+                    return line == null ? null : line.toString();
+                if (skipNewline && buffer[position] == '\n')
+                    position++;
+                skipNewline = false;
+                int start = position;
+                while (position < limit && buffer[position] != '\n' && buffer[position] != '\r')
+                    position++;
+                int length = (line == null ? 0 : line.length()) + position - start;
+                if (length > MAX_REQUEST_CHARS)
+                    return TOO_LONG;
+                if (position < limit) {
+                    skipNewline = buffer[position++] == '\r';
+                    if (line == null)
+                        return new String(buffer, start, position - 1 - start);
+                    return line.append(buffer, start, position - 1 - start).toString();
+                }
+                if (line == null)
+                    line = new StringBuilder();
+                line.append(buffer, start, position - start);
+            }
+        }
+
+        /**
+         * Reads and drops characters until the end of the input, or until the given number have been dropped.
+         */
+        void discard(long most) throws IOException {
+            long dropped = limit - position;
+            position = limit;
+            while (dropped < most && fill()) {
+                dropped += limit;
+                position = limit;
+            }
+        }
+
+        /**
+         * @return true if a character can be read without blocking
+         */
+        boolean ready() throws IOException {
+            return position < limit || in.ready();
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer, 0, buffer.length);
+            if (read <= 0)
+                return false;
+            position = 0;
+            limit = read;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Predicts words for a prefix which is typed one character at a time, e.g. in an autocomplete box. Rather than
+ * finding the prefix from the root on every keystroke, the session keeps the path of nodes for the current prefix,
+ * so advance() and backspace() each take one step, and topK() starts from the node the session is already at.
+ *
+ * The results of topK() are kept for each length of the prefix. After advance(c), the most popular words of the new
+ * prefix are the words of the previous results which continue with c, so these are reused whenever they are known to
+ * be complete; after backspace(), the results of the shorter prefix are returned again as they were.
+ *
+ * A session is not updated when words are inserted into or removed from the tree, so it should be reset() after the
+ * tree changes.
+ */
+public class PredictionSession {
+    private final StringBuilder prefix = new StringBuilder();
+    // path[d] is the node of the first d characters of the prefix, for d up to matched.
+    private DictionaryTree[] path = new DictionaryTree[16];
+    // The number of characters of the prefix which were found in the tree.
+    private int matched;
+    // The results of topK(n) for each length of the prefix, and the n they were found for.
+    private final List<List<String>> results = new ArrayList<>();
+    private int[] resultSizes = new int[16];
+
+    PredictionSession(DictionaryTree root) {
+        path[0] = root;
+        results.add(null);
+    }
+
+    /**
+     * Adds a character to the end of the prefix.
+     *
+     * @param c the character typed
+     * @return true if some word in the tree still starts with the prefix
+     */
+    boolean advance(char c) {
+        int depth = prefix.length();
+        prefix.append(c);
+        if (depth + 1 >= path.length) {
+            path = Arrays.copyOf(path, path.length * 2);
+            resultSizes = Arrays.copyOf(resultSizes, resultSizes.length * 2);
+        }
+        results.add(null);
+        if (matched == depth) {
+            DictionaryTree next = path[depth].child(c);
+            if (next != null) {
+                path[depth + 1] = next;
+                matched++;
+            }
+        }
+        return matched == prefix.length();
+    }
+
+    /**
+     * Removes the last character of the prefix.
+     *
+     * @return false if the prefix was already empty
+     */
+    boolean backspace() {
+        int depth = prefix.length();
+        if (depth == 0)
+            return false;
+        prefix.setLength(depth - 1);
+        results.remove(depth);
+        path[depth] = null;
+        matched = Math.min(matched, depth - 1);
+        return true;
+    }
+
+    /**
+     * Empties the prefix, and forgets every result.
+     */
+    void reset() {
+        prefix.setLength(0);
+        Arrays.fill(path, 1, path.length, null);
+        matched = 0;
+        results.clear();
+        results.add(null);
+    }
+
+    /**
+     * @return the prefix typed so far
+     */
+    String prefix() {
+        return prefix.toString();
+    }
+
+    /**
+     * Predicts the (at most) n most popular words starting with the current prefix, with the same result as
+     * DictionaryTree.predict(prefix(), n).
+     *
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words with the current prefix
+     */
+    List<String> topK(int n) {
+        int depth = prefix.length();
+        if (matched < depth)
+            return new ArrayList<>();
+        List<String> known = results.get(depth);
+        if (known == null || resultSizes[depth] != n) {
+            known = fromPrevious(depth, n);
+            if (known == null)
+                known = path[depth].mostPopular(n);
+            results.set(depth, known);
+            resultSizes[depth] = n;
+        }
+        return new ArrayList<>(known);
+    }
+
+    /**
+     * Works out the results for the prefix of the given length from the results of the prefix one character shorter.
+     *
+     * @return the results, or null if they cannot be known from the shorter prefix's results
+     */
+    private List<String> fromPrevious(int depth, int n) {
+        if (depth == 0)
+            return null;
+        List<String> previous = results.get(depth - 1);
+        if (previous == null || resultSizes[depth - 1] != n)
+            return null;
+        // Every word of the previous results starts with the shorter prefix, so only the last character is checked.
+        char last = prefix.charAt(depth - 1);
+        List<String> continuing = new ArrayList<>();
+        for (String word : previous) {
+            if (word.length() >= depth && word.charAt(depth - 1) == last)
+                continuing.add(word);
+        }
+        // Any other word with this prefix is less popular than all of the previous results, so the list is complete
+        // if it is full, or if the previous results held every word of the shorter prefix.
+        if (continuing.size() == n || previous.size() < n)
+            return continuing;
+        return null;
+    }
+}
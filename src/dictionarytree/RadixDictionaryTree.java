@@ -0,0 +1,439 @@
+package dictionarytree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * A dictionary with the same operations as DictionaryTree, held in a path-compressed (radix) tree: every chain of
+ * nodes which each have a single child and no word is collapsed into one edge, labelled with the whole string of
+ * characters along it. In a natural language dictionary most nodes are in such chains (the ends of words after the
+ * last shared prefix), so this has several times fewer nodes, and a lookup follows several times fewer references.
+ *
+ * An edge label is a slice of a word rather than a copy - every word through a node starts with the path to that
+ * node, so the label of a node is source[start, end) for any such word, where start and end are the depths of its
+ * parent and of itself. insert splits an edge where a new word leaves it, and remove merges a node which no longer
+ * holds a word into its only child.
+ *
+ * The statistics size(), height(), maximumBranching() and numLeaves() describe the equivalent uncompressed tree, so
+ * they give the same values as a DictionaryTree holding the same words. physicalSize() and physicalHeight() describe
+ * the compressed tree itself (its maximum branching is the same as the uncompressed tree's).
+ */
+public class RadixDictionaryTree {
+    private final Node root = new Node(null, 0, 0);
+
+    // Ranking value given to words which were inserted without a popularity, so they are predicted last.
+    private static final int UNRANKED = Integer.MIN_VALUE;
+
+    /**
+     * Inserts the given word into this dictionary.
+     * If the word already exists (or is empty), nothing will change.
+     *
+     * @param word the word to insert
+     */
+    void insert(String word) {
+        if (!word.isEmpty() && !contains(word))
+            insertNewWord(word, 0, false);
+    }
+
+    /**
+     * Inserts the given word into this dictionary with the given popularity.
+     * If the word already exists (or is empty), nothing will change.
+     *
+     * @param word       the word to insert
+     * @param popularity the popularity of the inserted word
+     */
+    void insert(String word, int popularity) {
+        if (!word.isEmpty() && !contains(word))
+            insertNewWord(word, popularity, true);
+    }
+
+    /**
+     * Helper method for the insert() methods - follows the word down the tree until it leaves an edge or runs out of
+     * edges to follow, splitting the edge it leaves, and then adds the rest of the word as a single new edge.
+     */
+    private void insertNewWord(String word, int popularity, boolean hasPopularity) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < word.length()) {
+            int at = node.indexOf(word.charAt(i));
+            if (at < 0) {
+                Node leaf = new Node(word, i, word.length());
+                node.addChild(word.charAt(i), leaf);
+                node = leaf;
+                path.add(leaf);
+                i = word.length();
+                break;
+            }
+            Node child = node.kids[at];
+            int common = child.commonLength(word, i);
+            if (common < child.end - child.start) {
+                // The word leaves the edge part of the way along - split the edge there.
+                Node middle = new Node(child.source, child.start, child.start + common);
+                child.start += common;
+                middle.addChild(child.source.charAt(child.start), child);
+                middle.recomputeStatistics();
+                node.kids[at] = middle;
+                child = middle;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        node.word = word;
+        node.popularity = hasPopularity ? popularity : 0;
+        node.hasPopularity = hasPopularity;
+        for (int d = path.size() - 1 ; d >= 0 ; d--)
+            path.get(d).recomputeStatistics();
+    }
+
+    /**
+     * Removes the specified word from this dictionary.
+     *
+     * @param word the word to delete from this dictionary
+     * @return the same value as DictionaryTree.remove(word) - true if the word's node had no children, false if it
+     * did or if the word is not in the dictionary
+     */
+    boolean remove(String word) {
+        List<Node> path = findPath(word);
+        if (path == null)
+            return false;
+        Node node = path.get(path.size() - 1);
+        boolean wasLeaf = node.isLeaf();
+        node.word = null;
+        node.popularity = 0;
+        node.hasPopularity = false;
+
+        if (node != root) {
+            Node parent = path.get(path.size() - 2);
+            if (node.isLeaf()) {
+                parent.removeChild(parent.indexOf(node.source.charAt(node.start)));
+                path.remove(path.size() - 1);
+                // The parent may now be a chain node itself.
+                if (parent != root && parent.word == null && parent.kids.length == 1) {
+                    Node grandparent = path.get(path.size() - 2);
+                    mergeWithChild(grandparent, parent);
+                    path.remove(path.size() - 1);
+                }
+            } else if (node.kids.length == 1) {
+                mergeWithChild(parent, node);
+                path.remove(path.size() - 1);
+            }
+        }
+        for (int d = path.size() - 1 ; d >= 0 ; d--)
+            path.get(d).recomputeStatistics();
+        return wasLeaf;
+    }
+
+    /**
+     * Replaces a node which holds no word and has one child by that child, whose edge then starts where the node's
+     * did (the child's source word passes through the node, so the longer label is still a slice of it).
+     */
+    private static void mergeWithChild(Node parent, Node node) {
+        Node child = node.kids[0];
+        child.start = node.start;
+        parent.kids[parent.indexOf(node.source.charAt(node.start))] = child;
+    }
+
+    /**
+     * @return the nodes from the root to the node holding the given word, or null if the word is not held
+     */
+    private List<Node> findPath(String word) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < word.length()) {
+            node = node.child(word.charAt(i));
+            if (node == null || node.end > word.length() || node.commonLength(word, i) < node.end - node.start)
+                return null;
+            path.add(node);
+            i = node.end;
+        }
+        return node.word == null ? null : path;
+    }
+
+    boolean contains(String word) {
+        if (word.isEmpty())
+            return false;
+        Node node = root;
+        int i = 0;
+        while (i < word.length()) {
+            node = node.child(word.charAt(i));
+            if (node == null || node.end > word.length() || node.commonLength(word, i) < node.end - node.start)
+                return false;
+            i = node.end;
+        }
+        return node.word != null;
+    }
+
+    /**
+     * Finds the node holding every word which starts with the prefix - the node at the end of the prefix, or the
+     * node at the end of the edge the prefix ends part of the way along.
+     *
+     * @return the node, or null if no word starts with the prefix
+     */
+    private Node findPrefix(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = node.child(prefix.charAt(i));
+            if (node == null)
+                return null;
+            int length = Math.min(node.end, prefix.length()) - i;
+            if (node.commonLength(prefix, i) < length)
+                return null;
+            i += length;
+        }
+        return node;
+    }
+
+    /**
+     * As DictionaryTree.predict(prefix) - the most popular word which starts with the prefix, other than the prefix
+     * itself (the first of the two most popular words which is not the prefix).
+     */
+    Optional<String> predict(String prefix) {
+        for (String word : predict(prefix, 2)) {
+            if (!word.equals(prefix))
+                return Optional.of(word);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Predicts the (at most) n most popular words starting with the prefix, with the same best-first search and the
+     * same result as DictionaryTree.predict(prefix, n).
+     *
+     * @param prefix the prefix of the words found
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words with the prefix, most popular first
+     */
+    List<String> predict(String prefix, int n) {
+        List<String> predictions = new ArrayList<>();
+        Node start = findPrefix(prefix);
+        if (start == null)
+            return predictions;
+        PriorityQueue<Candidate<Node>> queue = new PriorityQueue<>();
+        queue.add(new Candidate<>(start, null, 0, start.best, false));
+        while (predictions.size() < n && !queue.isEmpty()) {
+            Candidate<Node> next = queue.poll();
+            Node node = next.node;
+            if (next.isWord) {
+                predictions.add(node.word);
+                continue;
+            }
+            if (node.word != null)
+                queue.add(new Candidate<>(node, next, -1, node.ranking(), true));
+            // The children are sorted by their first characters, so traversal order is alphabetical order.
+            for (int index = 0 ; index < node.kids.length ; index++)
+                queue.add(new Candidate<>(node.kids[index], next, index, node.kids[index].best, false));
+        }
+        return predictions;
+    }
+
+    /**
+     * @return all words stored in this tree, in alphabetical order
+     */
+    List<String> allWords() {
+        return allWords(root, new ArrayList<>());
+    }
+
+    private static List<String> allWords(Node from, List<String> all) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(from);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.word != null)
+                all.add(node.word);
+            for (int i = node.kids.length - 1 ; i >= 0 ; i--)
+                stack.push(node.kids[i]);
+        }
+        return all;
+    }
+
+    /**
+     * @return the longest word in the tree (the first in alphabetical order, if several are as long)
+     */
+    String longestWord() {
+        // Follow the (first) child whose sub-tree is as tall as possible, which leads to the deepest leaf.
+        Node node = root;
+        while (!node.isLeaf()) {
+            for (Node child : node.kids) {
+                if (child.end - child.start + child.height == node.height) {
+                    node = child;
+                    break;
+                }
+            }
+        }
+        return node == root ? "" : node.source.substring(0, node.end);
+    }
+
+    /**
+     * @return the number of nodes the equivalent uncompressed tree would have
+     */
+    int size() {
+        return root.nodes;
+    }
+
+    /**
+     * @return the height of the equivalent uncompressed tree, i.e. the length of the longest word
+     */
+    int height() {
+        return root.height;
+    }
+
+    /**
+     * @return the maximum number of children held by any node - the same with or without compression, since the
+     * nodes which are collapsed each have one child
+     */
+    int maximumBranching() {
+        return root.maxBranching;
+    }
+
+    /**
+     * @return the number of leaves - also the same with or without compression
+     */
+    int numLeaves() {
+        return root.leaves;
+    }
+
+    /**
+     * @return the number of words stored in this tree
+     */
+    int numWords() {
+        return root.words;
+    }
+
+    /**
+     * @return the number of nodes in this (compressed) tree
+     */
+    int physicalSize() {
+        return root.physicalNodes;
+    }
+
+    /**
+     * @return the height of this (compressed) tree - the most edges followed to reach any word
+     */
+    int physicalHeight() {
+        return root.physicalHeight;
+    }
+
+    /**
+     * A node of the tree, with the edge leading to it from its parent.
+     */
+    private static final class Node {
+        // The label of the edge to this node is source[start, end), and end is the depth of this node.
+        private String source;
+        private int start;
+        private final int end;
+        // The children, sorted by the first character of their labels (which is the key).
+        private char[] keys = NO_KEYS;
+        private Node[] kids = NO_KIDS;
+        private String word;
+        private int popularity;
+        private boolean hasPopularity;
+        // Statistics of this sub-tree, recalculated on the path of every insert and remove. nodes, height, leaves and
+        // maxBranching are those of the uncompressed tree, counting this node but not the rest of its edge.
+        private int best = UNRANKED;
+        private int nodes = 1;
+        private int words;
+        private int leaves = 1;
+        private int height;
+        private int maxBranching;
+        private int physicalNodes = 1;
+        private int physicalHeight;
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_KIDS = new Node[0];
+
+        Node(String source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isLeaf() {
+            return kids.length == 0;
+        }
+
+        int ranking() {
+            return word != null && hasPopularity ? popularity : UNRANKED;
+        }
+
+        int indexOf(char first) {
+            return Arrays.binarySearch(keys, first);
+        }
+
+        Node child(char first) {
+            int at = indexOf(first);
+            return at >= 0 ? kids[at] : null;
+        }
+
+        /**
+         * @return the number of characters of this node's label which match text from position from on
+         */
+        int commonLength(String text, int from) {
+            int length = Math.min(end - start, text.length() - from);
+            int i = 0;
+            while (i < length && source.charAt(start + i) == text.charAt(from + i))
+                i++;
+            return i;
+        }
+
+        void addChild(char first, Node child) {
+            int at = -indexOf(first) - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newKids = new Node[kids.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(kids, 0, newKids, 0, at);
+            newKeys[at] = first;
+            newKids[at] = child;
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(kids, at, newKids, at + 1, kids.length - at);
+            keys = newKeys;
+            kids = newKids;
+        }
+
+        void removeChild(int at) {
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newKids = new Node[kids.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(kids, 0, newKids, 0, at);
+            System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+            System.arraycopy(kids, at + 1, newKids, at, kids.length - at - 1);
+            keys = newKeys;
+            kids = newKids;
+        }
+
+        /**
+         * Recalculates the statistics of this node from its own word and its children. An edge of length k stands for
+         * a chain of k nodes in the uncompressed tree, each with one child apart from the last.
+         */
+        void recomputeStatistics() {
+            best = ranking();
+            nodes = 1;
+            words = word == null ? 0 : 1;
+            leaves = isLeaf() ? 1 : 0;
+            height = 0;
+            maxBranching = kids.length;
+            physicalNodes = 1;
+            physicalHeight = 0;
+            for (Node child : kids) {
+                int edge = child.end - child.start;
+                best = Math.max(best, child.best);
+                nodes += edge - 1 + child.nodes;
+                words += child.words;
+                leaves += child.leaves;
+                height = Math.max(height, edge + child.height);
+                maxBranching = Math.max(maxBranching, child.maxBranching);
+                physicalNodes += child.physicalNodes;
+                physicalHeight = Math.max(physicalHeight, child.physicalHeight + 1);
+            }
+        }
+    }
+}
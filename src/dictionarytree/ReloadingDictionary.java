@@ -0,0 +1,217 @@
+package dictionarytree;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A dictionary loaded from a word list (as by CLI.loadWords), which is loaded again whenever the file changes.
+ *
+ * Each version of the dictionary is a separate DictionaryTree which is never changed once it is published. A reload
+ * builds the new tree in the background, on a single low-priority thread, while every query is still answered from
+ * the current tree, and then publishes the new tree through a volatile field. A query reads that field once, so it
+ * runs entirely against one version - a query which started before the swap finishes against the old tree, which is
+ * garbage collected once no query is using it. No query takes a lock or ever waits for a reload.
+ *
+ * The popularity of every word depends on its line in the file, so an edit near the top of the file changes most of
+ * the popularities - rebuilding costs little more than applying such a diff, and never leaves a half-updated tree.
+ */
+public class ReloadingDictionary implements Closeable {
+    // How long the file must stay unchanged before it is reloaded, so that a file being written is read once, whole.
+    private static final long SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final File file;
+    private volatile DictionaryTree current;
+    private volatile long reloads;
+    private volatile Throwable lastFailure;
+    // Enabled on each new version before it is published, if set.
+    private volatile DictionaryMetrics metrics;
+    // Held while a version is published, so that a version published by a reload which started before the metrics
+    // were enabled still gets them.
+    private final Object publishLock = new Object();
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * @param file the word list
+     * @param initial the dictionary already loaded from it
+     */
+    ReloadingDictionary(File file, DictionaryTree initial) {
+        this.file = file.getAbsoluteFile();
+        this.current = initial;
+    }
+
+    /**
+     * Loads the word list, and starts watching it for changes.
+     *
+     * @param file the word list
+     * @return the dictionary of the words in the file, which is reloaded when the file changes
+     * @throws IOException if there was a problem reading the file or watching its directory
+     */
+    static ReloadingDictionary watch(File file) throws IOException {
+        ReloadingDictionary dictionary = new ReloadingDictionary(file, BulkLoader.load(file));
+        dictionary.start();
+        return dictionary;
+    }
+
+    /**
+     * Starts watching the file, in a daemon thread which reloads it after each change.
+     *
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    synchronized void start() throws IOException {
+        if (watcher != null)
+            return;
+        watchService = FileSystems.getDefault().newWatchService();
+        file.toPath().getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watch, "dictionary-reload " + file.getName());
+        watcher.setDaemon(true);
+        watcher.setPriority(Thread.MIN_PRIORITY);
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the file. The current version stays available.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher == null)
+            return;
+        watcher.interrupt();
+        watchService.close();
+        watcher = null;
+    }
+
+    private void watch() {
+        Path name = file.toPath().getFileName();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!concerns(watchService.take(), name))
+                    continue;
+                // Wait until the file has not changed for SETTLE_NANOS before reading it. Changes to other files in
+                // the directory are consumed, but do not make the wait any longer.
+                long lastChange = System.nanoTime();
+                long remaining;
+                while ((remaining = lastChange + SETTLE_NANOS - System.nanoTime()) > 0) {
+                    WatchKey more = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (more == null)
+                        break;
+                    if (concerns(more, name))
+                        lastChange = System.nanoTime();
+                }
+                try {
+                    reload();
+                } catch (IOException | RuntimeException | Error e) {
+                    // Keep the current version, and try again on the next change - whatever went wrong (e.g. an
+                    // InternalError from a mapped file which was truncated while it was read) must not stop the
+                    // watching.
+                    lastFailure = e;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Consumes the events of a key and resets it.
+     *
+     * @return true if any of the events were for the file with the given name
+     */
+    private static boolean concerns(WatchKey key, Path name) {
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (name.equals(event.context()))
+                found = true;
+        }
+        key.reset();
+        return found;
+    }
+
+    /**
+     * Loads the file again in the calling thread (without using other threads) and publishes the new version.
+     *
+     * @throws IOException if there was a problem reading the file - the current version is then kept
+     */
+    void reload() throws IOException {
+        DictionaryMetrics metrics = this.metrics;
+        DictionaryTree next = metrics == null ? BulkLoader.load(file, false) : BulkLoader.load(file, false, metrics);
+        synchronized (publishLock) {
+            // The new version has not been published yet, so it can still be changed.
+            if (this.metrics != metrics)
+                next.enableMetrics(this.metrics);
+            current = next;
+            reloads++;
+        }
+    }
+
+    /**
+     * Records metrics for every version of the dictionary from now on, including the time taken by each reload.
+     *
+     * @return the metrics, which report the size of the current version
+     */
+    DictionaryMetrics enableMetrics() {
+        DictionaryMetrics metrics = new DictionaryMetrics();
+        metrics.track(this::snapshot);
+        synchronized (publishLock) {
+            this.metrics = metrics;
+            // The current version may already be read by other threads, so a copy of its root is published instead
+            // of changing it (see ConcurrentDictionaryTree.enableMetrics).
+            DictionaryTree next = current.copyPath("");
+            next.enableMetrics(metrics);
+            current = next;
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the current version, so that several queries can be answered from the same word set. The returned tree
+     * is shared with other threads and must not be changed.
+     *
+     * @return the current version of the dictionary
+     */
+    DictionaryTree snapshot() {
+        return current;
+    }
+
+    /**
+     * @return the number of times the file has been reloaded
+     */
+    long reloads() {
+        return reloads;
+    }
+
+    /**
+     * @return the problem with the last reload which failed, if any
+     */
+    Optional<Throwable> lastFailure() {
+        return Optional.ofNullable(lastFailure);
+    }
+
+    boolean contains(String word) {
+        return current.contains(word);
+    }
+
+    Optional<String> predict(String prefix) {
+        return current.predict(prefix);
+    }
+
+    List<String> predict(String prefix, int n) {
+        return current.predict(prefix, n);
+    }
+
+    int numWords() {
+        return current.numWords();
+    }
+}
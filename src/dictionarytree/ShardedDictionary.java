@@ -0,0 +1,279 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A dictionary whose words are split between several independent shards by a Partitioner, e.g. by the range of
+ * their first character or by a hash of the word. Each shard is a DictionaryShard, so a shard is either a tree in
+ * this process (LocalShard) or a client of a dictionary held somewhere else.
+ *
+ * insert, contains and remove only go to the shard which owns the word, so writes to different shards run in
+ * parallel. A prediction is sent to every shard which can hold words with its prefix, in parallel, and their results
+ * are merged by popularity - giving the same words, in the same order, as predict(prefix, n) on one tree holding
+ * every word.
+ */
+public class ShardedDictionary {
+    private final Partitioner partitioner;
+    private final DictionaryShard[] shards;
+    // Runs the predictions of a prefix which spans several shards.
+    private final Executor executor;
+
+    /**
+     * Creates a dictionary with a LocalShard for each partition, which predicts on the common ForkJoinPool.
+     *
+     * @param partitioner assigns each word to a shard
+     */
+    ShardedDictionary(Partitioner partitioner) {
+        this(partitioner, localShards(partitioner.shards()), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param partitioner assigns each word to a shard
+     * @param shards the shards, one for each partition
+     * @param executor runs the predictions of a prefix which spans several shards - shards which block (e.g. on the
+     *                 network) should be given an executor with enough threads for them
+     */
+    ShardedDictionary(Partitioner partitioner, List<? extends DictionaryShard> shards, Executor executor) {
+        if (shards.size() != partitioner.shards())
+            throw new IllegalArgumentException("The partitioner expects " + partitioner.shards() + " shards, but "
+                    + shards.size() + " were given");
+        this.partitioner = partitioner;
+        this.shards = shards.toArray(new DictionaryShard[0]);
+        this.executor = executor;
+    }
+
+    private static List<DictionaryShard> localShards(int count) {
+        List<DictionaryShard> shards = new ArrayList<>();
+        for (int i = 0 ; i < count ; i++)
+            shards.add(new LocalShard());
+        return shards;
+    }
+
+    void insert(String word) {
+        shardOf(word).insert(word);
+    }
+
+    void insert(String word, int popularity) {
+        shardOf(word).insert(word, popularity);
+    }
+
+    /**
+     * @return the same value as DictionaryTree.remove(word) on the owning shard's tree - which, when words are
+     * partitioned by hash, only knows about the longer words held by that shard
+     */
+    boolean remove(String word) {
+        return shardOf(word).remove(word);
+    }
+
+    boolean contains(String word) {
+        return shardOf(word).contains(word);
+    }
+
+    private DictionaryShard shardOf(String word) {
+        return shards[partitioner.shardOf(word)];
+    }
+
+    /**
+     * Predicts the (at most) n most popular words starting with the given prefix, from every shard which can hold
+     * them. Each of those shards finds its own n most popular words in parallel, and these lists are merged with a
+     * heap, taking the most popular word at the head of any list until n words are found.
+     *
+     * @param prefix the prefix of the words found
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words with the prefix, most popular first
+     */
+    List<String> predict(String prefix, int n) {
+        int[] owners = partitioner.shardsFor(prefix);
+        List<List<Word>> results = new ArrayList<>();
+        if (owners.length == 1) {
+            results.add(shards[owners[0]].predict(prefix, n));
+        } else {
+            List<CompletableFuture<List<Word>>> futures = new ArrayList<>();
+            for (int owner : owners) {
+                DictionaryShard shard = shards[owner];
+                futures.add(CompletableFuture.supplyAsync(() -> shard.predict(prefix, n), executor));
+            }
+            try {
+                for (CompletableFuture<List<Word>> future : futures)
+                    results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        return merge(results, n);
+    }
+
+    /**
+     * Merges lists of words which are each sorted by popularity (and alphabetically within a popularity, as
+     * DictionaryTree.predict orders them) into the n most popular words of them all, in the same order.
+     */
+    private static List<String> merge(List<List<Word>> results, int n) {
+        List<String> merged = new ArrayList<>();
+        if (results.size() == 1) {
+            for (Word word : results.get(0)) {
+                if (merged.size() == n)
+                    break;
+                merged.add(word.getWord());
+            }
+            return merged;
+        }
+        // The next word of each list, with the list it came from.
+        PriorityQueue<Head> heads = new PriorityQueue<>();
+        for (List<Word> result : results) {
+            if (!result.isEmpty())
+                heads.add(new Head(result, 0));
+        }
+        while (merged.size() < n && !heads.isEmpty()) {
+            Head head = heads.poll();
+            merged.add(head.word.getWord());
+            if (head.position + 1 < head.list.size())
+                heads.add(new Head(head.list, head.position + 1));
+        }
+        return merged;
+    }
+
+    /**
+     * @return the number of words held by every shard
+     */
+    int numWords() {
+        int words = 0;
+        for (DictionaryShard shard : shards)
+            words += shard.numWords();
+        return words;
+    }
+
+    /**
+     * @return the shards of this dictionary, in partition order
+     */
+    List<DictionaryShard> shards() {
+        return Arrays.asList(shards.clone());
+    }
+
+    /**
+     * The word at a position of one shard's results, in the heap of merge().
+     */
+    private static final class Head implements Comparable<Head> {
+        private final List<Word> list;
+        private final int position;
+        private final Word word;
+        private final int ranking;
+
+        Head(List<Word> list, int position) {
+            this.list = list;
+            this.position = position;
+            this.word = list.get(position);
+            this.ranking = word.getPopularityOptional().orElse(Integer.MIN_VALUE);
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            // Most popular first, then alphabetical - the order in which one tree returns words.
+            if (ranking != other.ranking)
+                return Integer.compare(other.ranking, ranking);
+            return word.getWord().compareTo(other.word.getWord());
+        }
+    }
+
+    /**
+     * Decides which shard holds each word.
+     */
+    interface Partitioner {
+
+        /**
+         * @return the number of shards
+         */
+        int shards();
+
+        /**
+         * @return the shard which holds the given word
+         */
+        int shardOf(String word);
+
+        /**
+         * @return the shards which can hold words starting with the given prefix (the empty prefix included)
+         */
+        int[] shardsFor(String prefix);
+
+        /**
+         * Partitions words by the range of their first character. There is one shard more than there are bounds -
+         * shard 0 holds the words starting with a character before bounds[0], shard i the words starting with a
+         * character from bounds[i - 1] up to (not including) bounds[i], and the last shard the rest. A prefix only
+         * goes to the one shard which holds its first character, unless it is empty.
+         *
+         * @param bounds the first character of each shard but the first, in increasing order
+         */
+        static Partitioner byFirstCharacter(char... bounds) {
+            char[] sorted = bounds.clone();
+            for (int i = 1 ; i < sorted.length ; i++) {
+                if (sorted[i - 1] >= sorted[i])
+                    throw new IllegalArgumentException("The bounds must be in increasing order");
+            }
+            int[] all = allShards(sorted.length + 1);
+            return new Partitioner() {
+                @Override
+                public int shards() {
+                    return all.length;
+                }
+
+                @Override
+                public int shardOf(String word) {
+                    // The shard of the empty word does not matter, as long as it is always the same one.
+                    if (word.isEmpty())
+                        return 0;
+                    int at = Arrays.binarySearch(sorted, word.charAt(0));
+                    return at >= 0 ? at + 1 : -at - 1;
+                }
+
+                @Override
+                public int[] shardsFor(String prefix) {
+                    return prefix.isEmpty() ? all.clone() : new int[] {shardOf(prefix)};
+                }
+            };
+        }
+
+        /**
+         * Partitions words by a hash of the whole word, which spreads them evenly between the shards whatever the
+         * distribution of their first characters - but every prefix then goes to every shard.
+         *
+         * @param shards the number of shards
+         */
+        static Partitioner byHash(int shards) {
+            if (shards < 1)
+                throw new IllegalArgumentException("There must be at least one shard: " + shards);
+            int[] all = allShards(shards);
+            return new Partitioner() {
+                @Override
+                public int shards() {
+                    return shards;
+                }
+
+                @Override
+                public int shardOf(String word) {
+                    int hash = word.hashCode() * 0x9E3779B9; // Spreads similar hash codes apart.
+                    return Math.floorMod(hash ^ (hash >>> 16), shards);
+                }
+
+                @Override
+                public int[] shardsFor(String prefix) {
+                    return all.clone();
+                }
+            };
+        }
+
+        private static int[] allShards(int count) {
+            int[] all = new int[count];
+            for (int i = 0 ; i < count ; i++)
+                all[i] = i;
+            return all;
+        }
+    }
+}
@@ -0,0 +1,641 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A secondary index of the words of a DictionaryTree which finds the most popular words containing, or ending with,
+ * a given string (see DictionaryTree.enableSubstringIndex). The tree itself only answers prefix queries.
+ *
+ * The words are held in a few segments, each an immutable suffix array of its words, each followed by a '\0', so the
+ * suffixes which start with a pattern form one range of the array, found by binary search - and the words ending with
+ * a pattern are those with a suffix starting with the pattern and '\0'. The best word of any range is found with a
+ * segment tree over the ranks of the words of the suffixes, so the top n words of a range are taken best first, by
+ * splitting the range around each word found, in time proportional to n (and to the other occurrences of the same
+ * words) rather than to the size of the range. The suffixes are sorted by prefix doubling with radix sorts of int
+ * ranks, in O(c log w) time for c characters in words of at most w characters.
+ *
+ * The index is log-structured. Inserted words go into a delta of at most DELTA_MAX words, which queries scan. When the
+ * delta is full it becomes a segment of its own, and segments of similar sizes are merged into one - a segment is
+ * merged with those smaller than it once they hold at least half as many words - so there are O(log(words /
+ * DELTA_MAX)) segments, and each word is merged O(log(words / DELTA_MAX)) times. Merges are built on a background
+ * thread, one at a time, while queries are answered from the segments they replace, and the merged segment is swapped
+ * in by the first call after it is ready. Removed words are marked as removed in their segment and passed over; a
+ * change of popularity is a removal and an insertion; a segment of which half the words have been removed is rebuilt.
+ *
+ * So a query takes O(segments * (pattern length * log(characters) + n log n) + DELTA_MAX * word length), plus the
+ * occurrences of removed or repeated words passed over. An insertion takes O(1), except that every DELTA_MAX-th one
+ * sorts the suffixes of the delta, and a removal takes O(segments * log(words)); no change waits for a merge. If
+ * changes come faster than merges are built, the segments made while a merge is built are not merged until it is
+ * done, and queries slow down with their number. Words are ranked as by DictionaryTree.predict(prefix, n): most
+ * popular first, then alphabetically, with words without a popularity last. Words may not contain '\0'.
+ *
+ * Queries swap in merges which are ready, so they change the index too: every method is synchronized, so that queries
+ * can be made from several threads at once, as the tree's other read methods can (merges only read segments, which
+ * never change). A merge which fails leaves the segments it would have replaced in place, so the index stays
+ * complete; the failure is reported by the next query, never by a change, which is always applied.
+ */
+public class SubstringIndex {
+    // The most words held in the delta, which every query scans, before they are made into a segment.
+    static final int DELTA_MAX = 256;
+    // Ends every word in the text, and sorts before every other character.
+    private static final char END = '\0';
+    // Estimated sizes for estimatedHeapBytes(): the header of an object or array, and an entry of the delta.
+    private static final long HEADER_BYTES = 16;
+    private static final long DELTA_ENTRY_BYTES = 96;
+
+    // Builds the merged segments of every index, one at a time, at low priority.
+    private static final ExecutorService MERGER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "substring-index-merger");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final List<Segment> segments = new ArrayList<>();
+    // The words inserted since the last segment was made, with their rankings.
+    private final Map<String, Integer> delta = new HashMap<>();
+    // The merge being built, the segments it replaces, and the words removed from them since it was started (which
+    // the merged segment still holds).
+    private Future<Segment> merge;
+    private List<Segment> merging = new ArrayList<>();
+    private final List<String> removedWhileMerging = new ArrayList<>();
+    // Why the last merge failed, until a query reports it.
+    private Throwable failure;
+
+    /**
+     * Indexes the given words, in the calling thread.
+     *
+     * @param words the words, in alphabetical order and without repeats
+     * @param rankings the popularity of each word, or Integer.MIN_VALUE for a word without a popularity
+     * @throws IllegalArgumentException if the words are not in alphabetical order, or are repeated
+     */
+    SubstringIndex(List<String> words, int[] rankings) {
+        String[] sorted = words.toArray(new String[0]);
+        for (int i = 1 ; i < sorted.length ; i++) {
+            if (sorted[i - 1].compareTo(sorted[i]) >= 0)
+                throw new IllegalArgumentException("The words must be in alphabetical order, without repeats");
+        }
+        if (sorted.length > 0)
+            segments.add(new Segment(sorted, rankings.clone()));
+    }
+
+    /**
+     * Finds the (at most) n most popular words which contain the given string anywhere.
+     *
+     * @param infix the string the words contain (an empty string is contained in every word)
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words containing the string, most popular first
+     */
+    synchronized List<String> containing(String infix, int n) {
+        return top(infix, false, n);
+    }
+
+    /**
+     * Finds the (at most) n most popular words which end with the given string.
+     *
+     * @param suffix the string the words end with
+     * @param n the number of words to be returned
+     * @return the (at most) n most popular words ending with the string, most popular first
+     */
+    synchronized List<String> endingWith(String suffix, int n) {
+        return top(suffix, true, n);
+    }
+
+    private List<String> top(String pattern, boolean atEnd, int n) {
+        settle();
+        reportFailure();
+        // Every word ends with the empty string, as every word contains it.
+        atEnd &= !pattern.isEmpty();
+        String searched = atEnd ? pattern + END : pattern;
+        // The best n words of each segment and those of the delta, of which the best n overall are taken.
+        List<Match> matches = new ArrayList<>();
+        for (Segment segment : segments)
+            segment.top(searched, n, matches);
+        for (Map.Entry<String, Integer> entry : delta.entrySet()) {
+            String word = entry.getKey();
+            if (atEnd ? word.endsWith(pattern) : word.contains(pattern))
+                matches.add(new Match(word, entry.getValue()));
+        }
+        matches.sort(Comparator.naturalOrder());
+        List<String> top = new ArrayList<>();
+        for (int i = 0 ; i < Math.min(n, matches.size()) ; i++)
+            top.add(matches.get(i).word);
+        return top;
+    }
+
+    /**
+     * Indexes a word which has been inserted into the dictionary.
+     *
+     * @param ranking the popularity of the word, or Integer.MIN_VALUE if it has none
+     */
+    synchronized void insert(String word, int ranking) {
+        settle();
+        delta.put(word, ranking);
+        if (delta.size() < DELTA_MAX)
+            return;
+        String[] words = delta.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        int[] rankings = new int[words.length];
+        for (int i = 0 ; i < words.length ; i++)
+            rankings[i] = delta.get(words[i]);
+        delta.clear();
+        segments.add(new Segment(words, rankings));
+        startMerge();
+    }
+
+    /**
+     * Stops indexing a word which has been removed from the dictionary.
+     */
+    synchronized void remove(String word) {
+        settle();
+        if (delta.remove(word) != null)
+            return;
+        for (Segment segment : segments) {
+            if (segment.remove(word)) {
+                if (merging.contains(segment))
+                    removedWhileMerging.add(word);
+                break;
+            }
+        }
+        startMerge();
+    }
+
+    /**
+     * Changes the popularity of a word which is indexed.
+     */
+    synchronized void update(String word, int ranking) {
+        remove(word);
+        insert(word, ranking);
+    }
+
+    /**
+     * Waits until no merge is being built or is due, e.g. so that queries can be measured at their best (see
+     * SubstringBenchmark).
+     *
+     * @throws IllegalStateException if a merge failed
+     */
+    synchronized void awaitMerges() {
+        while (merge != null) {
+            try {
+                merge.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Recorded by settle().
+            }
+            settle();
+        }
+        reportFailure();
+    }
+
+    /**
+     * Throws the failure of the last merge which failed, if it has not been reported yet.
+     *
+     * @throws IllegalStateException with the failure as its cause
+     */
+    private void reportFailure() {
+        Throwable cause = failure;
+        if (cause != null) {
+            failure = null;
+            throw new IllegalStateException("Merging the substring index failed", cause);
+        }
+    }
+
+    /**
+     * Swaps in the merge being built if it is ready, and then starts the next one which is due. If the merge failed,
+     * the segments it would have replaced are kept, so the index is still complete, and they are merged again later -
+     * the failure is kept for reportFailure().
+     */
+    private void settle() {
+        if (merge == null || !merge.isDone())
+            return;
+        Segment merged;
+        try {
+            merged = merge.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            merge = null;
+            merging = new ArrayList<>();
+            removedWhileMerging.clear();
+            failure = e.getCause();
+            return;
+        }
+        segments.removeAll(merging);
+        if (merged.words.length > 0)
+            segments.add(merged);
+        for (String word : removedWhileMerging)
+            merged.remove(word);
+        merge = null;
+        merging = new ArrayList<>();
+        removedWhileMerging.clear();
+        startMerge();
+    }
+
+    /**
+     * Starts building the next merge which is due, unless one is being built: of the smallest segments, as long as
+     * each holds at most twice as many words as those smaller than it together, if that is more than one segment -
+     * or otherwise of a segment of which at least half the words have been removed.
+     */
+    private void startMerge() {
+        if (merge != null)
+            return;
+        List<Segment> bySize = new ArrayList<>(segments);
+        bySize.sort(Comparator.comparingInt(Segment::liveWords));
+        List<Segment> inputs = new ArrayList<>();
+        long words = 0;
+        for (Segment segment : bySize) {
+            if (!inputs.isEmpty() && segment.liveWords() > 2 * words)
+                break;
+            inputs.add(segment);
+            words += segment.liveWords();
+        }
+        if (inputs.size() < 2) {
+            inputs.clear();
+            for (Segment segment : segments) {
+                if (2 * segment.removedCount >= segment.words.length) {
+                    inputs.add(segment);
+                    break;
+                }
+            }
+            if (inputs.isEmpty())
+                return;
+        }
+        // The merger reads the segments, which never change, and copies of the words removed from them so far.
+        List<BitSet> removed = new ArrayList<>();
+        for (Segment segment : inputs)
+            removed.add((BitSet) segment.removed.clone());
+        merging = inputs;
+        merge = MERGER.submit(() -> Segment.merge(inputs, removed));
+    }
+
+    /**
+     * @return the number of words indexed
+     */
+    synchronized int numWords() {
+        int count = delta.size();
+        for (Segment segment : segments)
+            count += segment.liveWords();
+        return count;
+    }
+
+    /**
+     * Estimates the heap retained by this index beyond the words themselves (which are shared with the tree): for
+     * each segment, the text, the suffix array, the ranks and segment tree (four ints for each character of the
+     * words), and the rankings and starts of the words; and the delta. A merge being built is not counted.
+     *
+     * @return the estimated number of bytes
+     */
+    synchronized long estimatedHeapBytes() {
+        long bytes = HEADER_BYTES * 6 + DELTA_ENTRY_BYTES * delta.size();
+        for (Segment segment : segments)
+            bytes += segment.estimatedHeapBytes();
+        return bytes;
+    }
+
+    /**
+     * Compares two words in the order they are ranked: most popular first, then alphabetically.
+     */
+    private static int compareWords(String a, int aRanking, String b, int bRanking) {
+        if (aRanking != bRanking)
+            return Integer.compare(bRanking, aRanking);
+        return a.compareTo(b);
+    }
+
+    /**
+     * A word found by a query, with its ranking.
+     */
+    private static final class Match implements Comparable<Match> {
+        final String word;
+        final int ranking;
+
+        Match(String word, int ranking) {
+            this.word = word;
+            this.ranking = ranking;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            return compareWords(word, ranking, other.word, other.ranking);
+        }
+    }
+
+    /**
+     * A suffix array of some words, which never changes once built, and the words removed from it since.
+     */
+    private static final class Segment {
+        // The words, in alphabetical order (a word's id is its position), and their rankings.
+        final String[] words;
+        final int[] rankings;
+        // Each word followed by END, one after another, and the position in the text at which each word starts.
+        private final char[] text;
+        private final int[] starts;
+        // The positions in the text of every suffix of every word, in the order of the suffixes.
+        private final int[] suffixes;
+        // The rank of the word of each suffix, in suffix order (0 is the best word).
+        private final int[] suffixRanks;
+        // A segment tree over suffixRanks: node p holds the position of the best rank among its leaves, which for a
+        // suffix position i is node suffixes.length + i.
+        private final int[] best;
+        // The words removed since the segment was built (by id) - the only part which changes.
+        final BitSet removed = new BitSet();
+        int removedCount;
+
+        /**
+         * @param words the words, in alphabetical order and without repeats
+         * @param rankings the ranking of each word
+         */
+        Segment(String[] words, int[] rankings) {
+            int count = words.length;
+            this.words = words;
+            this.rankings = rankings;
+            starts = new int[count + 1];
+            int longest = 0;
+            for (int i = 0 ; i < count ; i++) {
+                starts[i + 1] = starts[i] + words[i].length() + 1;
+                longest = Math.max(longest, words[i].length());
+            }
+            text = new char[starts[count]];
+            // The word of each position of the text, while the segment is built.
+            int[] wordOf = new int[text.length];
+            for (int i = 0 ; i < count ; i++) {
+                words[i].getChars(0, words[i].length(), text, starts[i]);
+                text[starts[i + 1] - 1] = END;
+                Arrays.fill(wordOf, starts[i], starts[i + 1], i);
+            }
+
+            // The rank of each word: most popular first, then alphabetically (which the ids already are). Each key
+            // holds the ranking flipped so that the most popular sorts first, and then the id.
+            long[] byRank = new long[count];
+            for (int i = 0 ; i < count ; i++)
+                byRank[i] = (~(rankings[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL) << 31 | i;
+            Arrays.sort(byRank);
+            int[] rankOf = new int[count];
+            for (int rank = 0 ; rank < count ; rank++)
+                rankOf[(int) (byRank[rank] & Integer.MAX_VALUE)] = rank;
+
+            suffixes = sortSuffixes(text, count, longest + 1);
+            suffixRanks = new int[suffixes.length];
+            for (int i = 0 ; i < suffixes.length ; i++)
+                suffixRanks[i] = rankOf[wordOf[suffixes[i]]];
+
+            int n = suffixes.length;
+            best = new int[2 * n];
+            for (int i = 0 ; i < n ; i++)
+                best[n + i] = i;
+            for (int p = n - 1 ; p > 0 ; p--)
+                best[p] = better(best[2 * p], best[2 * p + 1]);
+        }
+
+        /**
+         * Builds one segment of the words of several which had not been removed when the merge was started.
+         *
+         * @param inputs the segments merged
+         * @param removed the words removed from each segment, as they were when the merge was started
+         * @return the merged segment
+         */
+        static Segment merge(List<Segment> inputs, List<BitSet> removed) {
+            int count = 0;
+            for (int s = 0 ; s < inputs.size() ; s++)
+                count += inputs.get(s).words.length - removed.get(s).cardinality();
+            String[] words = new String[count];
+            int[] rankings = new int[count];
+            // Each segment is in alphabetical order, and no word is in two of them, so they are merged in one pass.
+            int[] next = new int[inputs.size()];
+            for (int s = 0 ; s < inputs.size() ; s++)
+                next[s] = removed.get(s).nextClearBit(0);
+            for (int c = 0 ; c < count ; c++) {
+                int from = -1;
+                for (int s = 0 ; s < inputs.size() ; s++) {
+                    if (next[s] < inputs.get(s).words.length && (from < 0
+                            || inputs.get(s).words[next[s]].compareTo(inputs.get(from).words[next[from]]) < 0))
+                        from = s;
+                }
+                words[c] = inputs.get(from).words[next[from]];
+                rankings[c] = inputs.get(from).rankings[next[from]];
+                next[from] = removed.get(from).nextClearBit(next[from] + 1);
+            }
+            return new Segment(words, rankings);
+        }
+
+        /**
+         * Sorts the suffixes of the text by prefix doubling: after the round for length k, each suffix is ranked by
+         * its first 2k characters, found by a stable counting sort on the rank of its first k characters of the
+         * suffixes already in order of the k characters after them. A suffix only needs to be in order up to the END
+         * of its word (nothing after that is ever compared), so the rounds stop once they cover the longest word and
+         * its END - O(log longest) rounds of O(characters) each.
+         *
+         * @param ends the number of ENDs in the text
+         * @param limit the number of characters of each suffix which must be in order
+         * @return the positions of the suffixes of the text which do not start with END, in order
+         */
+        private static int[] sortSuffixes(char[] text, int ends, int limit) {
+            int n = text.length;
+            int[] order = new int[n];
+            int[] rank = new int[n];
+            int[] scratch = new int[n];
+            char highest = END;
+            for (char c : text)
+                highest = (char) Math.max(highest, c);
+            int[] count = new int[Math.max(n, highest + 1) + 1];
+            // In order of the first character.
+            for (char c : text)
+                count[c + 1]++;
+            for (int c = 1 ; c <= highest + 1 ; c++)
+                count[c] += count[c - 1];
+            for (int i = 0 ; i < n ; i++)
+                order[count[text[i]]++] = i;
+            int classes = 0;
+            for (int j = 0 ; j < n ; j++) {
+                if (j > 0 && text[order[j]] != text[order[j - 1]])
+                    classes++;
+                rank[order[j]] = classes;
+            }
+            classes++;
+
+            for (int k = 1 ; k < limit && classes < n ; k <<= 1) {
+                // In order of the k characters after the first k: the suffixes with nothing after their first k
+                // first, then the others in the order of the suffixes which start k characters later.
+                int p = 0;
+                for (int i = Math.max(0, n - k) ; i < n ; i++)
+                    scratch[p++] = i;
+                for (int j = 0 ; j < n ; j++) {
+                    if (order[j] >= k)
+                        scratch[p++] = order[j] - k;
+                }
+                // Then stably in order of the first k.
+                Arrays.fill(count, 0, classes + 1, 0);
+                for (int i = 0 ; i < n ; i++)
+                    count[rank[i] + 1]++;
+                for (int r = 1 ; r <= classes ; r++)
+                    count[r] += count[r - 1];
+                for (int j = 0 ; j < n ; j++)
+                    order[count[rank[scratch[j]]]++] = scratch[j];
+                // The suffixes whose first 2k characters are the same share a rank.
+                int[] next = scratch;
+                classes = 0;
+                next[order[0]] = 0;
+                for (int j = 1 ; j < n ; j++) {
+                    int a = order[j - 1];
+                    int b = order[j];
+                    if (rank[a] != rank[b] || (a + k < n ? rank[a + k] : -1) != (b + k < n ? rank[b + k] : -1))
+                        classes++;
+                    next[b] = classes;
+                }
+                classes++;
+                scratch = rank;
+                rank = next;
+            }
+
+            int[] suffixes = new int[n - ends];
+            int s = 0;
+            for (int j = 0 ; j < n ; j++) {
+                if (text[order[j]] != END)
+                    suffixes[s++] = order[j];
+            }
+            return suffixes;
+        }
+
+        int liveWords() {
+            return words.length - removedCount;
+        }
+
+        /**
+         * Marks a word of this segment as removed.
+         *
+         * @return true if the word was in this segment (and had not been removed already)
+         */
+        boolean remove(String word) {
+            int id = Arrays.binarySearch(words, word);
+            if (id < 0 || removed.get(id))
+                return false;
+            removed.set(id);
+            removedCount++;
+            return true;
+        }
+
+        /**
+         * Adds the (at most) n best words of this segment which have a suffix starting with the searched string to
+         * the matches.
+         */
+        void top(String searched, int n, List<Match> matches) {
+            // The range of the suffixes which start with the searched string.
+            int from = firstSuffix(searched, false);
+            int to = firstSuffix(searched, true);
+            Set<Integer> seen = new HashSet<>();
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> Integer.compare(suffixRanks[a[2]],
+                    suffixRanks[b[2]]));
+            if (from < to)
+                ranges.add(new int[] {from, to, bestIn(from, to)});
+            // Take the best suffix of the best range, and search the rest of that range either side of it.
+            int found = 0;
+            while (found < n && !ranges.isEmpty()) {
+                int[] range = ranges.poll();
+                int at = range[2];
+                int word = wordAt(suffixes[at]);
+                if (!removed.get(word) && seen.add(word)) {
+                    matches.add(new Match(words[word], rankings[word]));
+                    found++;
+                }
+                if (range[0] < at)
+                    ranges.add(new int[] {range[0], at, bestIn(range[0], at)});
+                if (at + 1 < range[1])
+                    ranges.add(new int[] {at + 1, range[1], bestIn(at + 1, range[1])});
+            }
+        }
+
+        /**
+         * @return the id of the word which holds the given position of the text
+         */
+        private int wordAt(int position) {
+            int at = Arrays.binarySearch(starts, position);
+            return at >= 0 ? at : -at - 2;
+        }
+
+        /**
+         * @return whichever of two positions in the suffix array has the better ranked word
+         */
+        private int better(int a, int b) {
+            return suffixRanks[a] <= suffixRanks[b] ? a : b;
+        }
+
+        /**
+         * @return the position in [from, to) of the suffix array with the best ranked word
+         */
+        private int bestIn(int from, int to) {
+            int n = suffixes.length;
+            int found = -1;
+            for (int l = from + n, r = to + n ; l < r ; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    found = found < 0 ? best[l] : better(found, best[l]);
+                    l++;
+                }
+                if ((r & 1) == 1) {
+                    r--;
+                    found = found < 0 ? best[r] : better(found, best[r]);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * @param pattern the start of the suffixes searched for
+         * @param after false for the first suffix which starts with the pattern or comes after it, true for the first
+         *              suffix which comes after every suffix starting with it
+         * @return the position in the suffix array
+         */
+        private int firstSuffix(String pattern, boolean after) {
+            int low = 0;
+            int high = suffixes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int compared = comparePrefix(suffixes[middle], pattern);
+                if (compared < 0 || after && compared == 0)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Compares the start of the suffix at the given position of the text with a pattern.
+         *
+         * @return 0 if the suffix starts with the pattern, otherwise the order of the suffix and the pattern
+         */
+        private int comparePrefix(int position, String pattern) {
+            for (int i = 0 ; i < pattern.length() ; i++) {
+                char c = text[position + i];
+                if (c != pattern.charAt(i))
+                    return Character.compare(c, pattern.charAt(i));
+                if (c == END)
+                    return 0;
+            }
+            return 0;
+        }
+
+        long estimatedHeapBytes() {
+            long bytes = HEADER_BYTES * 9;
+            bytes += 2L * text.length;
+            bytes += 4L * (suffixes.length + suffixRanks.length + best.length);
+            bytes += 4L * (rankings.length + starts.length) + 4L * words.length;
+            bytes += removed.size() / 8;
+            return bytes;
+        }
+    }
+}
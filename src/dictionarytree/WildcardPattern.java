@@ -0,0 +1,268 @@
+package dictionarytree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pattern of whole words with wildcards, compiled to a small automaton which DictionaryTree.match walks together
+ * with the tree. In a pattern:
+ *
+ *   ?        matches any one character
+ *   *        matches any number of characters, including none
+ *   [abc]    matches one of the characters listed, which may include ranges such as [a-z]
+ *   [!abc]   (or [^abc]) matches one character which is not listed
+ *   \c       matches the character c itself, e.g. \* or \?
+ *
+ * and every other character matches itself, e.g. "h?ll*" or "*ing".
+ *
+ * The automaton is the NFA of the pattern: state i means the first i elements of the pattern have been matched, and
+ * the states the automaton may be in are held as a bit set. Each character read is one step of the whole set, so
+ * following a branch of the tree costs one step no matter how many stars the pattern has, and a branch can be pruned
+ * as soon as the set is empty, or when every state still needs more characters than the branch is deep.
+ */
+final class WildcardPattern {
+    // The kinds of element in a pattern.
+    private static final byte LITERAL = 0;
+    private static final byte ANY = 1;
+    private static final byte STAR = 2;
+    private static final byte CLASS = 3;
+
+    private final String pattern;
+    private final byte[] kinds;
+    // The character of each LITERAL element.
+    private final char[] literals;
+    // The ranges of each CLASS element, as pairs of first and last characters, and whether it is negated.
+    private final char[][] ranges;
+    private final boolean[] negated;
+    // remaining[i] is the number of characters the elements from i on need at least (the elements other than stars).
+    private final int[] remaining;
+    // allStars[i] is true if element i and every element after it is a star, so that any word matches from state i.
+    private final boolean[] allStars;
+    private final long[] start;
+
+    private WildcardPattern(String pattern, byte[] kinds, char[] literals, char[][] ranges, boolean[] negated) {
+        this.pattern = pattern;
+        this.kinds = kinds;
+        this.literals = literals;
+        this.ranges = ranges;
+        this.negated = negated;
+        int m = kinds.length;
+        this.remaining = new int[m + 1];
+        this.allStars = new boolean[m + 1];
+        for (int i = m - 1 ; i >= 0 ; i--) {
+            remaining[i] = remaining[i + 1] + (kinds[i] == STAR ? 0 : 1);
+            // The state after the last element reads nothing more, so only a star can match every continuation.
+            allStars[i] = kinds[i] == STAR && (i == m - 1 || allStars[i + 1]);
+        }
+        long[] initial = new long[(m >> 6) + 1];
+        initial[0] = 1;
+        this.start = closure(initial);
+    }
+
+    /**
+     * Compiles a pattern.
+     *
+     * @param pattern the pattern (see the class comment for its syntax)
+     * @return the compiled pattern
+     * @throws IllegalArgumentException if a character class is not closed, or the pattern ends with a lone \
+     */
+    static WildcardPattern compile(String pattern) {
+        List<Byte> kinds = new ArrayList<>();
+        StringBuilder literals = new StringBuilder();
+        List<char[]> ranges = new ArrayList<>();
+        List<Boolean> negated = new ArrayList<>();
+        for (int i = 0 ; i < pattern.length() ; i++) {
+            char c = pattern.charAt(i);
+            char[] range = null;
+            boolean not = false;
+            byte kind;
+            if (c == '*') {
+                // Several stars in a row match the same as one.
+                if (!kinds.isEmpty() && kinds.get(kinds.size() - 1) == STAR)
+                    continue;
+                kind = STAR;
+            } else if (c == '?') {
+                kind = ANY;
+            } else if (c == '[') {
+                int end = i + 1;
+                if (end < pattern.length() && (pattern.charAt(end) == '!' || pattern.charAt(end) == '^')) {
+                    not = true;
+                    end++;
+                }
+                // A ] straight after the [ (or [!) is listed rather than closing the class.
+                int close = pattern.indexOf(']', end + 1);
+                if (end >= pattern.length() || close < 0)
+                    throw new IllegalArgumentException("Unclosed character class in " + pattern);
+                range = parseClass(pattern.substring(end, close));
+                kind = CLASS;
+                i = close;
+            } else if (c == '\\') {
+                if (++i == pattern.length())
+                    throw new IllegalArgumentException("Pattern ends with an unescaped \\: " + pattern);
+                c = pattern.charAt(i);
+                kind = LITERAL;
+            } else {
+                kind = LITERAL;
+            }
+            kinds.add(kind);
+            literals.append(kind == LITERAL ? c : '\0');
+            ranges.add(range);
+            negated.add(not);
+        }
+        byte[] kindArray = new byte[kinds.size()];
+        boolean[] negatedArray = new boolean[kinds.size()];
+        for (int i = 0 ; i < kindArray.length ; i++) {
+            kindArray[i] = kinds.get(i);
+            negatedArray[i] = negated.get(i);
+        }
+        return new WildcardPattern(pattern, kindArray, literals.toString().toCharArray(),
+                ranges.toArray(new char[0][]), negatedArray);
+    }
+
+    /**
+     * @param body the inside of a character class, e.g. "a-z_"
+     * @return the ranges it lists, as pairs of first and last characters
+     */
+    private static char[] parseClass(String body) {
+        StringBuilder ranges = new StringBuilder();
+        for (int i = 0 ; i < body.length() ; i++) {
+            char first = body.charAt(i);
+            char last = first;
+            if (i + 2 < body.length() && body.charAt(i + 1) == '-') {
+                last = body.charAt(i + 2);
+                i += 2;
+            }
+            ranges.append(first).append(last);
+        }
+        return ranges.toString().toCharArray();
+    }
+
+    /**
+     * @return the states before any character has been read
+     */
+    long[] start() {
+        return start;
+    }
+
+    /**
+     * Reads one character.
+     *
+     * @param states the states the automaton may be in
+     * @param c the character read
+     * @return the states it may be in afterwards, or null if there are none (no word continuing this way can match)
+     */
+    long[] step(long[] states, char c) {
+        long[] next = new long[states.length];
+        boolean any = false;
+        for (int i = nextState(states, 0) ; i >= 0 && i < kinds.length ; i = nextState(states, i + 1)) {
+            int to = kinds[i] == STAR ? i : accepts(i, c) ? i + 1 : -1;
+            if (to >= 0) {
+                next[to >> 6] |= 1L << to;
+                any = true;
+            }
+        }
+        return any ? closure(next) : null;
+    }
+
+    /**
+     * Reads the character of a branch of the tree, as step(states, c), but also prunes the branch if the pattern needs
+     * more characters than any word in it has.
+     *
+     * @param height the number of characters of the longest word below the branch, beyond the character read
+     * @return the states after reading the character, or null if no word in the branch can match
+     */
+    long[] stepInto(long[] states, char c, int height) {
+        long[] next = step(states, c);
+        return next == null || charactersNeeded(next) > height ? null : next;
+    }
+
+    /**
+     * @return true if the word read so far matches the pattern
+     */
+    boolean matches(long[] states) {
+        int m = kinds.length;
+        return (states[m >> 6] & (1L << m)) != 0;
+    }
+
+    /**
+     * @return true if every word which starts with what has been read so far matches the pattern
+     */
+    boolean matchesEveryContinuation(long[] states) {
+        for (int i = nextState(states, 0) ; i >= 0 ; i = nextState(states, i + 1)) {
+            if (allStars[i])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the fewest characters which must still be read for the pattern to match
+     */
+    int charactersNeeded(long[] states) {
+        int fewest = Integer.MAX_VALUE;
+        for (int i = nextState(states, 0) ; i >= 0 ; i = nextState(states, i + 1))
+            fewest = Math.min(fewest, remaining[i]);
+        return fewest;
+    }
+
+    /**
+     * @return the only character which can be read next, if the automaton is in a single state which is a literal
+     * character (so a branch of the tree can be found directly rather than trying every child), or -1
+     */
+    int onlyNext(long[] states) {
+        int state = nextState(states, 0);
+        if (state < 0 || state >= kinds.length || nextState(states, state + 1) >= 0 || kinds[state] != LITERAL)
+            return -1;
+        return literals[state];
+    }
+
+    /**
+     * Adds every state which can be reached from the given states without reading a character - i.e. skips stars,
+     * which may match nothing. A star only leads forward, so one pass in order of the states is enough.
+     */
+    private long[] closure(long[] states) {
+        for (int i = 0 ; i < kinds.length ; i++) {
+            if (kinds[i] == STAR && (states[i >> 6] & (1L << i)) != 0)
+                states[(i + 1) >> 6] |= 1L << (i + 1);
+        }
+        return states;
+    }
+
+    /**
+     * @return the first state in the set from the given state on, or -1 if there is none
+     */
+    private static int nextState(long[] states, int from) {
+        int at = from >> 6;
+        if (at >= states.length)
+            return -1;
+        long bits = states[at] & (-1L << from);
+        while (bits == 0) {
+            if (++at == states.length)
+                return -1;
+            bits = states[at];
+        }
+        return (at << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * @return true if the element at the given position (which is not a star) matches the character
+     */
+    private boolean accepts(int element, char c) {
+        switch (kinds[element]) {
+            case LITERAL:
+                return literals[element] == c;
+            case ANY:
+                return true;
+            default:
+                char[] range = ranges[element];
+                boolean listed = false;
+                for (int i = 0 ; i < range.length && !listed ; i += 2)
+                    listed = range[i] <= c && c <= range[i + 1];
+                return listed != negated[element];
+        }
+    }
+
+    public String toString() {
+        return pattern;
+    }
+}
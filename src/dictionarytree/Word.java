@@ -1,3 +1,5 @@
+package dictionarytree;
+
 import java.util.Optional;
 
 public class Word {
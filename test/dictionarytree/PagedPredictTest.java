@@ -0,0 +1,63 @@
+package dictionarytree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the pages of predict(prefix, offset, n), which skip whole sub-trees, and countWithPrefix with slices and
+ * counts of the brute-force ranking of PredictTest.
+ */
+class PagedPredictTest {
+
+    @Test
+    void pagesFollowTheRanking() {
+        Random random = new Random(24);
+        for (int round = 0 ; round < 200 ; round++) {
+            Map<String, Integer> words = PredictTest.randomWords(random, 60);
+            DictionaryTree tree = PredictTest.build(words);
+            assertPages(tree, words);
+        }
+    }
+
+    @Test
+    void pagesFollowTheRankingAfterChanges() {
+        Random random = new Random(25);
+        for (int round = 0 ; round < 100 ; round++) {
+            Map<String, Integer> words = PredictTest.randomWords(random, 60);
+            DictionaryTree tree = PredictTest.build(words);
+            for (String word : new ArrayList<>(words.keySet())) {
+                int change = random.nextInt(3);
+                if (change == 0) {
+                    tree.remove(word);
+                    words.remove(word);
+                } else if (change == 1) {
+                    int popularity = random.nextInt(5) - 2;
+                    tree.updatePopularity(word, popularity);
+                    words.put(word, popularity);
+                }
+            }
+            assertPages(tree, words);
+        }
+    }
+
+    private static void assertPages(DictionaryTree tree, Map<String, Integer> words) {
+        for (String prefix : PredictTest.prefixes()) {
+            List<String> ranking = PredictTest.bruteForce(words, prefix);
+            assertEquals(ranking.size(), tree.countWithPrefix(prefix), "countWithPrefix(\"" + prefix + "\")");
+            for (int offset = 0 ; offset <= ranking.size() + 1 ; offset++) {
+                for (int n : new int[] {1, 2, 5}) {
+                    int from = Math.min(offset, ranking.size());
+                    assertEquals(ranking.subList(from, Math.min(offset + n, ranking.size())),
+                            tree.predict(prefix, offset, n),
+                            "predict(\"" + prefix + "\", " + offset + ", " + n + ") of " + words);
+                }
+            }
+        }
+    }
+}
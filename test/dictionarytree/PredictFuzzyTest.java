@@ -0,0 +1,84 @@
+package dictionarytree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares predictFuzzy with the edit distance from the prefix to every start of every word.
+ */
+class PredictFuzzyTest {
+
+    @Test
+    void ranksByEditsThenPopularity() {
+        Random random = new Random(11);
+        for (int round = 0 ; round < 100 ; round++) {
+            Map<String, Integer> words = PredictTest.randomWords(random, 60);
+            DictionaryTree tree = PredictTest.build(words);
+            for (String prefix : List.of("", "a", "d", "ab", "ba", "dd", "abc", "cab", "acca", "bbbbb")) {
+                for (int maxEdits = 0 ; maxEdits <= 3 ; maxEdits++) {
+                    List<String> expected = bruteForce(words, prefix, maxEdits);
+                    for (int n : new int[] {1, 3, expected.size() + 1})
+                        assertEquals(expected.subList(0, Math.min(n, expected.size())),
+                                tree.predictFuzzy(prefix, maxEdits, n),
+                                "predictFuzzy(\"" + prefix + "\", " + maxEdits + ", " + n + ") of " + words);
+                }
+            }
+        }
+    }
+
+    @Test
+    void withNoEditsPredictsAsPredict() {
+        Random random = new Random(12);
+        for (int round = 0 ; round < 50 ; round++) {
+            DictionaryTree tree = PredictTest.build(PredictTest.randomWords(random, 60));
+            for (String prefix : PredictTest.prefixes())
+                assertEquals(tree.predict(prefix, 10), tree.predictFuzzy(prefix, 0, 10));
+        }
+    }
+
+    /**
+     * @return every word with a start within maxEdits of the prefix, with the fewest edits first, then the most
+     * popular, then alphabetically
+     */
+    private static List<String> bruteForce(Map<String, Integer> words, String prefix, int maxEdits) {
+        return words.entrySet().stream()
+                .filter(entry -> edits(prefix, entry.getKey()) <= maxEdits)
+                .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(entry -> edits(prefix, entry.getKey()))
+                        .thenComparing(Comparator.<Map.Entry<String, Integer>>comparingInt(
+                                entry -> entry.getValue() == null ? Integer.MIN_VALUE : entry.getValue()).reversed())
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the fewest edits which turn the prefix into some start of the word (the whole word included)
+     */
+    private static int edits(String prefix, String word) {
+        int best = Integer.MAX_VALUE;
+        for (int end = 0 ; end <= word.length() ; end++)
+            best = Math.min(best, levenshtein(prefix, word.substring(0, end)));
+        return best;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] distance = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0 ; i <= a.length() ; i++) {
+            for (int j = 0 ; j <= b.length() ; j++) {
+                if (i == 0 || j == 0)
+                    distance[i][j] = i + j;
+                else
+                    distance[i][j] = Math.min(distance[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+                            Math.min(distance[i - 1][j], distance[i][j - 1]) + 1);
+            }
+        }
+        return distance[a.length()][b.length()];
+    }
+}
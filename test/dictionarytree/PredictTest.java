@@ -0,0 +1,121 @@
+package dictionarytree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the best-first search of predict with sorting every word with the prefix.
+ */
+class PredictTest {
+    // Few letters and popularities, so that there are many shared prefixes and many ties.
+    private static final int LETTERS = 3;
+    private static final int POPULARITIES = 5;
+
+    @Test
+    void predictsTheMostPopularWordsInOrder() {
+        Random random = new Random(1);
+        for (int round = 0 ; round < 200 ; round++) {
+            Map<String, Integer> words = randomWords(random, 60);
+            DictionaryTree tree = build(words);
+            for (String prefix : prefixes()) {
+                List<String> expected = bruteForce(words, prefix);
+                for (int n = 0 ; n <= expected.size() + 1 ; n++)
+                    assertEquals(expected.subList(0, Math.min(n, expected.size())), tree.predict(prefix, n),
+                            "predict(\"" + prefix + "\", " + n + ") of " + words);
+            }
+        }
+    }
+
+    @Test
+    void predictsTheMostPopularWordOtherThanThePrefix() {
+        Random random = new Random(2);
+        for (int round = 0 ; round < 200 ; round++) {
+            Map<String, Integer> words = randomWords(random, 60);
+            DictionaryTree tree = build(words);
+            for (String prefix : prefixes()) {
+                Optional<String> expected = bruteForce(words, prefix).stream()
+                        .filter(word -> !word.equals(prefix))
+                        .findFirst();
+                assertEquals(expected, tree.predict(prefix), "predict(\"" + prefix + "\") of " + words);
+            }
+        }
+    }
+
+    @Test
+    void keepsTheOrderAfterRemovals() {
+        Random random = new Random(3);
+        for (int round = 0 ; round < 100 ; round++) {
+            Map<String, Integer> words = randomWords(random, 60);
+            DictionaryTree tree = build(words);
+            for (String word : new ArrayList<>(words.keySet())) {
+                if (random.nextBoolean()) {
+                    tree.remove(word);
+                    words.remove(word);
+                }
+            }
+            for (String prefix : prefixes())
+                assertEquals(bruteForce(words, prefix), tree.predict(prefix, words.size()), words.toString());
+        }
+    }
+
+    /**
+     * @return words of up to 4 letters, each with a popularity or (for null) none
+     */
+    static Map<String, Integer> randomWords(Random random, int count) {
+        Map<String, Integer> words = new TreeMap<>();
+        for (int i = 0 ; i < count ; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0 ; j < length ; j++)
+                word.append((char) ('a' + random.nextInt(LETTERS)));
+            words.put(word.toString(), random.nextInt(4) == 0 ? null : random.nextInt(POPULARITIES) - 2);
+        }
+        return words;
+    }
+
+    static DictionaryTree build(Map<String, Integer> words) {
+        DictionaryTree tree = new DictionaryTree();
+        words.forEach((word, popularity) -> {
+            if (popularity == null)
+                tree.insert(word);
+            else
+                tree.insert(word, popularity);
+        });
+        return tree;
+    }
+
+    /**
+     * @return every word with the prefix, most popular first, then alphabetically, with the words without a
+     * popularity last
+     */
+    static List<String> bruteForce(Map<String, Integer> words, String prefix) {
+        return words.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(
+                                entry -> entry.getValue() == null ? Integer.MIN_VALUE : entry.getValue())
+                        .reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    static List<String> prefixes() {
+        List<String> prefixes = new ArrayList<>(List.of("", "d"));
+        for (char a = 'a' ; a < 'a' + LETTERS ; a++) {
+            prefixes.add(String.valueOf(a));
+            for (char b = 'a' ; b < 'a' + LETTERS ; b++)
+                prefixes.add("" + a + b);
+        }
+        return prefixes;
+    }
+}
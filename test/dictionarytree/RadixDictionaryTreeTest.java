@@ -0,0 +1,129 @@
+package dictionarytree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares a RadixDictionaryTree with a DictionaryTree holding the same words, as edges are split by insert and
+ * merged by remove, and its compressed shape with one worked out from the words.
+ */
+class RadixDictionaryTreeTest {
+
+    @Test
+    void splitsAndMergesEdges() {
+        Random random = new Random(18);
+        for (int round = 0 ; round < 30 ; round++) {
+            RadixDictionaryTree radix = new RadixDictionaryTree();
+            DictionaryTree tree = new DictionaryTree();
+            Set<String> words = new TreeSet<>();
+            for (int step = 0 ; step < 200 ; step++) {
+                String word = randomWord(random);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(tree.remove(word), radix.remove(word), "remove " + word + " from " + words);
+                    words.remove(word);
+                } else if (random.nextBoolean()) {
+                    tree.insert(word);
+                    radix.insert(word);
+                    words.add(word);
+                } else {
+                    int popularity = random.nextInt(10);
+                    tree.insert(word, popularity);
+                    radix.insert(word, popularity);
+                    words.add(word);
+                }
+                assertSame(tree, radix, words);
+            }
+            // Removing everything must merge the tree back to its root.
+            for (String word : new ArrayList<>(words)) {
+                assertEquals(tree.remove(word), radix.remove(word), "remove " + word + " from " + words);
+                words.remove(word);
+                assertSame(tree, radix, words);
+            }
+            assertEquals(1, radix.physicalSize());
+        }
+    }
+
+    private static void assertSame(DictionaryTree tree, RadixDictionaryTree radix, Set<String> words) {
+        String message = words.toString();
+        assertEquals(new ArrayList<>(words), radix.allWords(), message);
+        assertEquals(tree.size(), radix.size(), message);
+        assertEquals(tree.height(), radix.height(), message);
+        assertEquals(tree.maximumBranching(), radix.maximumBranching(), message);
+        assertEquals(tree.numLeaves(), radix.numLeaves(), message);
+        assertEquals(tree.numWords(), radix.numWords(), message);
+        assertEquals(tree.longestWord().length(), radix.longestWord().length(), message);
+        assertEquals(physicalSize(words), radix.physicalSize(), message);
+        assertEquals(physicalHeight(words), radix.physicalHeight(), message);
+        for (String prefix : List.of("", "a", "b", "ab", "ba", "abc")) {
+            assertEquals(tree.predict(prefix, 5), radix.predict(prefix, 5), message);
+            assertEquals(tree.predict(prefix), radix.predict(prefix), message);
+            assertEquals(tree.contains(prefix), radix.contains(prefix), message);
+        }
+    }
+
+    /**
+     * @return the number of nodes of the compressed tree: the root, and every node of the uncompressed tree which
+     * holds a word or does not have exactly one child
+     */
+    private static int physicalSize(Set<String> words) {
+        int nodes = 1;
+        for (String prefix : prefixes(words)) {
+            if (!prefix.isEmpty() && (words.contains(prefix) || children(words, prefix) != 1))
+                nodes++;
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the most nodes of the compressed tree on the path to any word, not counting the root
+     */
+    private static int physicalHeight(Set<String> words) {
+        int height = 0;
+        for (String word : words) {
+            int nodes = 0;
+            for (int end = 1 ; end <= word.length() ; end++) {
+                String prefix = word.substring(0, end);
+                if (words.contains(prefix) || children(words, prefix) != 1)
+                    nodes++;
+            }
+            height = Math.max(height, nodes);
+        }
+        return height;
+    }
+
+    private static Set<String> prefixes(Set<String> words) {
+        Set<String> prefixes = new TreeSet<>();
+        for (String word : words) {
+            for (int end = 0 ; end <= word.length() ; end++)
+                prefixes.add(word.substring(0, end));
+        }
+        return prefixes;
+    }
+
+    /**
+     * @return the number of distinct characters which follow the prefix in the words
+     */
+    private static int children(Set<String> words, String prefix) {
+        Set<Character> next = new TreeSet<>();
+        for (String word : words) {
+            if (word.length() > prefix.length() && word.startsWith(prefix))
+                next.add(word.charAt(prefix.length()));
+        }
+        return next.size();
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0 ; i < length ; i++)
+            word.append((char) ('a' + random.nextInt(3)));
+        return word.toString();
+    }
+}
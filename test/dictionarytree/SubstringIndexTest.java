@@ -0,0 +1,103 @@
+package dictionarytree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares predictContaining and predictEndingWith with a scan of every word, as words are inserted, removed and
+ * given new popularities through the tree - enough of them that the index makes segments and merges them, and many of
+ * the removals are made while a merge is being built in the background.
+ */
+class SubstringIndexTest {
+    private static final List<String> PATTERNS = List.of("a", "b", "ab", "ba", "cc", "abc", "dab", "aaa");
+
+    @Test
+    void matchesAScanAsWordsChange() {
+        Random random = new Random(25);
+        DictionaryTree tree = new DictionaryTree();
+        Map<String, Integer> words = new TreeMap<>();
+        // Some words are indexed when the index is built, and the rest as they are inserted.
+        for (int i = 0 ; i < 500 ; i++)
+            insert(tree, words, randomWord(random), random);
+        SubstringIndex index = tree.enableSubstringIndex();
+        List<String> inserted = new ArrayList<>(words.keySet());
+        for (int step = 1 ; step <= 6000 ; step++) {
+            int change = random.nextInt(10);
+            if (change < 6) {
+                String word = randomWord(random);
+                insert(tree, words, word, random);
+                inserted.add(word);
+            } else if (change < 9) {
+                String word = inserted.get(random.nextInt(inserted.size()));
+                tree.remove(word);
+                words.remove(word);
+            } else {
+                String word = inserted.get(random.nextInt(inserted.size()));
+                int popularity = random.nextInt(20);
+                if (tree.updatePopularity(word, popularity))
+                    words.put(word, popularity);
+            }
+            if (step % 100 == 0)
+                assertMatches(tree, words);
+            if (step % 1000 == 0) {
+                index.awaitMerges();
+                assertMatches(tree, words);
+            }
+        }
+        index.awaitMerges();
+        assertEquals(words.size(), index.numWords());
+        assertMatches(tree, words);
+    }
+
+    private static void assertMatches(DictionaryTree tree, Map<String, Integer> words) {
+        for (String pattern : PATTERNS) {
+            for (int n : new int[] {1, 10, 100}) {
+                assertEquals(bruteForce(words, pattern, false, n), tree.predictContaining(pattern, n),
+                        "predictContaining(\"" + pattern + "\", " + n + ")");
+                assertEquals(bruteForce(words, pattern, true, n), tree.predictEndingWith(pattern, n),
+                        "predictEndingWith(\"" + pattern + "\", " + n + ")");
+            }
+        }
+    }
+
+    /**
+     * @return the (at most) n words containing (or ending with) the pattern, ranked as by predict(prefix, n)
+     */
+    private static List<String> bruteForce(Map<String, Integer> words, String pattern, boolean atEnd, int n) {
+        Map<String, Integer> matches = new TreeMap<>();
+        words.forEach((word, popularity) -> {
+            if (atEnd ? word.endsWith(pattern) : word.contains(pattern))
+                matches.put(word, popularity);
+        });
+        List<String> ranking = PredictTest.bruteForce(matches, "");
+        return ranking.subList(0, Math.min(n, ranking.size()));
+    }
+
+    private static void insert(DictionaryTree tree, Map<String, Integer> words, String word, Random random) {
+        if (words.containsKey(word))
+            return;
+        if (random.nextInt(4) == 0) {
+            tree.insert(word);
+            words.put(word, null);
+        } else {
+            int popularity = random.nextInt(20);
+            tree.insert(word, popularity);
+            words.put(word, popularity);
+        }
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(7);
+        for (int i = 0 ; i < length ; i++)
+            word.append((char) ('a' + random.nextInt(4)));
+        return word.toString();
+    }
+}